@@ -0,0 +1,76 @@
+package com.example.creditmodule.journal;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What the journal adds to every payment, on top of the row updates it does not replace: an append
+ * alone, an append that waits for its own fsync, and 64 threads appending and waiting together, where
+ * the group commit lets one fsync release many payments. Compare with payLoan in
+ * {@code LoanServiceBenchmark} and {@code LoanPaymentConcurrencyBenchmark}, which include all of it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+public class PaymentJournalBenchmark {
+
+    // About the size of a serialized one-installment PaymentEvent
+    private static final byte[] PAYLOAD = ("{\"type\":\"PAYMENT\",\"loanId\":123456,\"customerId\":654321,"
+            + "\"paymentDate\":\"2025-01-01\",\"installments\":[{\"installmentId\":1234567,\"paidAmount\":916.66}],"
+            + "\"remainingInstallments\":11,\"loanPaid\":false,\"principalReleased\":916.66}")
+            .getBytes(StandardCharsets.UTF_8);
+
+    private PaymentJournal journal;
+
+    @Setup(Level.Trial)
+    public void open() {
+        journal = new PaymentJournal(Path.of("target/journal/jmh-" + UUID.randomUUID()), 64 << 20);
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws IOException {
+        journal.close();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public long append() {
+        return journal.append(PAYLOAD);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public long appendAndAwaitDurable() {
+        long sequence = journal.append(PAYLOAD);
+        journal.awaitDurable(sequence);
+        return sequence;
+    }
+
+    @Benchmark
+    @Threads(64)
+    public long appendAndAwaitDurableConcurrently() {
+        long sequence = journal.append(PAYLOAD);
+        journal.awaitDurable(sequence);
+        return sequence;
+    }
+}
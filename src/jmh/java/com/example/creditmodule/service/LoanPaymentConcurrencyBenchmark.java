@@ -0,0 +1,114 @@
+package com.example.creditmodule.service;
+
+import com.example.creditmodule.CreditModuleApplication;
+import com.example.creditmodule.TestCustomers;
+import com.example.creditmodule.repository.CustomerRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 64 threads paying installments spread over {@code loans} loans: with one loan every payment waits
+ * for the one before it, with 64 each thread has a loan of its own. Every operation pays the first
+ * installment and then, still holding the loan, marks it unpaid again, so the loans never run out of
+ * payable installments; the reset is part of the measured time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 3, time = 3)
+@Threads(64)
+@Fork(1)
+public class LoanPaymentConcurrencyBenchmark {
+
+    private static final BigDecimal AMOUNT = BigDecimal.valueOf(2_400);
+    private static final BigDecimal INTEREST_RATE = new BigDecimal("0.1");
+    private static final int INSTALLMENTS = 24;
+
+    @Param({"1", "8", "64"})
+    public int loans;
+
+    private ConfigurableApplicationContext context;
+    private LoanService loanService;
+    private JdbcTemplate jdbcTemplate;
+    private final List<Long> loanIds = new ArrayList<>();
+    private final AtomicInteger threadCounter = new AtomicInteger();
+    private BigDecimal payment;
+
+    @Setup(Level.Trial)
+    public void boot() {
+        String database = "jmh-" + UUID.randomUUID();
+        context = new SpringApplicationBuilder(CreditModuleApplication.class)
+                .properties(
+                        "spring.datasource.url=jdbc:h2:mem:" + database + ";DB_CLOSE_DELAY=-1",
+                        "credit.reactive.url=r2dbc:h2:mem:///" + database + ";DB_CLOSE_DELAY=-1",
+                        "credit.journal.dir=target/journal/" + database,
+                        // The reset after each payment goes around Hibernate
+                        "credit.l2-cache.enabled=false",
+                        "spring.jpa.hibernate.ddl-auto=create-drop",
+                        "spring.main.banner-mode=off",
+                        "logging.level.root=WARN",
+                        "server.port=0",
+                        "credit.accrual.cron=-")
+                .run();
+        loanService = context.getBean(LoanService.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+
+        Long customerId = TestCustomers.newCustomer(context.getBean(CustomerRepository.class), 1_000_000_000_000L).getId();
+        for (int i = 0; i < loans; i++) {
+            loanService.createLoan(customerId, AMOUNT, INTEREST_RATE, INSTALLMENTS);
+        }
+        loanIds.addAll(jdbcTemplate.queryForList("select id from loan where customer_id = ? order by id", Long.class, customerId));
+        payment = jdbcTemplate.queryForObject("select min(amount) from loan_installment where loan_id = ?",
+                BigDecimal.class, loanIds.get(0));
+    }
+
+    @TearDown(Level.Trial)
+    public void shutdown() {
+        context.close();
+    }
+
+    @State(Scope.Thread)
+    public static class AssignedLoan {
+        Long loanId;
+
+        @Setup(Level.Trial)
+        public void assign(LoanPaymentConcurrencyBenchmark benchmark) {
+            loanId = benchmark.loanIds.get(benchmark.threadCounter.getAndIncrement() % benchmark.loans);
+        }
+    }
+
+    @Benchmark
+    public String payLoan(AssignedLoan loan) {
+        return loanService.serializedOnLoan(loan.loanId, () -> {
+            String result = loanService.payLoan(loan.loanId, payment);
+            jdbcTemplate.update("update loan_installment set is_paid = false, paid_amount = 0, payment_date = null "
+                    + "where loan_id = ?", loan.loanId);
+            jdbcTemplate.update("update loan set remaining_installments = ?, is_paid = false where id = ?",
+                    INSTALLMENTS, loan.loanId);
+            return result;
+        });
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.creditmodule.service;
+
+import com.example.creditmodule.CreditModuleApplication;
+import com.example.creditmodule.TestCustomers;
+import com.example.creditmodule.module.Loan;
+import com.example.creditmodule.repository.CustomerRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The full {@link LoanService} against a private in-memory H2 database, with the customer already
+ * holding {@code historyDepth} loans of the same shape. The context is booted once per trial;
+ * {@code createLoan} keeps adding loans during measurement, so read its numbers per parameter pair
+ * rather than across pairs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoanServiceBenchmark {
+
+    private static final BigDecimal AMOUNT = BigDecimal.valueOf(1_000);
+    private static final BigDecimal INTEREST_RATE = new BigDecimal("0.2");
+
+    @Param({"6", "9", "12", "24"})
+    public int installments;
+
+    @Param({"0", "100", "1000"})
+    public int historyDepth;
+
+    private ConfigurableApplicationContext context;
+    private LoanService loanService;
+    private JdbcTemplate jdbcTemplate;
+    private Long customerId;
+
+    @Setup(Level.Trial)
+    public void boot() {
+        String database = "jmh-" + UUID.randomUUID();
+        context = new SpringApplicationBuilder(CreditModuleApplication.class)
+                .properties(
+                        "spring.datasource.url=jdbc:h2:mem:" + database + ";DB_CLOSE_DELAY=-1",
+                        "credit.reactive.url=r2dbc:h2:mem:///" + database + ";DB_CLOSE_DELAY=-1",
+                        "credit.journal.dir=target/journal/" + database,
+                        "spring.jpa.hibernate.ddl-auto=create-drop",
+                        "spring.main.banner-mode=off",
+                        "logging.level.root=WARN",
+                        "server.port=0",
+                        "credit.accrual.cron=-")
+                .run();
+        loanService = context.getBean(LoanService.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+
+        customerId = TestCustomers.newCustomer(context.getBean(CustomerRepository.class), 1_000_000_000_000L).getId();
+        for (int i = 0; i < historyDepth; i++) {
+            loanService.createLoan(customerId, AMOUNT, INTEREST_RATE, installments);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void shutdown() {
+        context.close();
+    }
+
+    /**
+     * A fresh loan for every {@code payLoan} call, so each invocation pays the same first three
+     * installments instead of finding nothing left to pay.
+     */
+    @State(Scope.Thread)
+    public static class FreshLoan {
+        Long loanId;
+        BigDecimal payment;
+
+        @Setup(Level.Invocation)
+        public void createLoan(LoanServiceBenchmark benchmark) {
+            benchmark.loanService.createLoan(benchmark.customerId, AMOUNT, INTEREST_RATE, benchmark.installments);
+            loanId = benchmark.jdbcTemplate.queryForObject(
+                    "select max(id) from loan where customer_id = ?", Long.class, benchmark.customerId);
+            payment = AMOUNT.multiply(BigDecimal.valueOf(2));
+        }
+    }
+
+    @Benchmark
+    public void createLoan() {
+        loanService.createLoan(customerId, AMOUNT, INTEREST_RATE, installments);
+    }
+
+    @Benchmark
+    public String payLoan(FreshLoan loan) {
+        return loanService.payLoan(loan.loanId, loan.payment);
+    }
+
+    @Benchmark
+    public List<Loan> listLoans() {
+        return loanService.listLoans(customerId);
+    }
+}
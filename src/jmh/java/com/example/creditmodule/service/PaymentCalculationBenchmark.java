@@ -0,0 +1,110 @@
+package com.example.creditmodule.service;
+
+import com.example.creditmodule.analytics.PortfolioAnalytics;
+import com.example.creditmodule.module.LoanInstallment;
+import com.example.creditmodule.module.ScheduledInstallment;
+import com.example.creditmodule.repository.LoanInstallmentRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The payment calculation paths of {@link LoanService} in isolation: the fixed-point waterfall,
+ * the BigDecimal fallback and the per-installment adjustment. The repository is a no-op stub, so
+ * only the arithmetic and the entity updates are measured. Half of each schedule is overdue and the
+ * payment covers every installment, so every installment goes through the waterfall.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PaymentCalculationBenchmark {
+
+    private static final BigDecimal INTEREST_RATE = new BigDecimal("0.2");
+
+    @Param({"6", "9", "12", "24"})
+    public int installments;
+
+    private LoanService loanService;
+    private List<LoanInstallment> schedule;
+    private BigDecimal payment;
+    private LocalDate paymentDate;
+    private long[] amountCents;
+    private long[] dueEpochDays;
+    private long[] paidUnits;
+    private long paymentUnits;
+
+    @Setup
+    public void setUp() {
+        LoanInstallmentRepository repository = (LoanInstallmentRepository) Proxy.newProxyInstance(
+                LoanInstallmentRepository.class.getClassLoader(),
+                new Class<?>[]{LoanInstallmentRepository.class},
+                (proxy, method, args) -> method.getName().equals("save") ? args[0] : null);
+        ScheduleEngine scheduleEngine = new ScheduleEngine(16);
+        loanService = new LoanService(null, null, repository, null, null, null, scheduleEngine, null, null, null,
+                new PortfolioAnalytics(null, null));
+
+        paymentDate = LocalDate.now();
+        BigDecimal total = scheduleEngine.totalAmount(BigDecimal.valueOf(10_000), INTEREST_RATE);
+        schedule = new ArrayList<>(installments);
+        for (ScheduledInstallment scheduled : scheduleEngine.schedule(total, INTEREST_RATE, installments,
+                paymentDate.minusMonths(installments / 2))) {
+            LoanInstallment installment = new LoanInstallment();
+            installment.setAmount(scheduled.amount());
+            installment.setDueDate(scheduled.dueDate());
+            installment.setPaidAmount(BigDecimal.ZERO);
+            schedule.add(installment);
+        }
+        payment = total.multiply(BigDecimal.valueOf(2));
+
+        amountCents = new long[installments];
+        dueEpochDays = new long[installments];
+        paidUnits = new long[installments];
+        for (int i = 0; i < installments; i++) {
+            amountCents[i] = PaymentCalculator.toCents(schedule.get(i).getAmount());
+            dueEpochDays[i] = schedule.get(i).getDueDate().toEpochDay();
+        }
+        paymentUnits = PaymentCalculator.toUnits(payment);
+    }
+
+    @Benchmark
+    public PaymentCalculator.Waterfall waterfall() {
+        return PaymentCalculator.waterfall(amountCents, dueEpochDays, installments, paymentUnits,
+                paymentDate.toEpochDay(), paidUnits);
+    }
+
+    @Benchmark
+    public Object processPayments() {
+        return loanService.processPayments(schedule, payment);
+    }
+
+    @Benchmark
+    public Object processPaymentsExact() {
+        return loanService.processPaymentsExact(schedule, payment, paymentDate);
+    }
+
+    @Benchmark
+    public void calculateAdjustment(Blackhole blackhole) {
+        for (LoanInstallment installment : schedule) {
+            blackhole.consume(loanService.calculateAdjustment(installment, paymentDate));
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.creditmodule.service;
+
+import com.example.creditmodule.CreditModuleApplication;
+import com.example.creditmodule.TestCustomers;
+import com.example.creditmodule.module.Loan;
+import com.example.creditmodule.module.LoanInstallment;
+import com.example.creditmodule.repository.CustomerRepository;
+import com.example.creditmodule.repository.LoanRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The read paths the second-level cache is meant for, with the cache on and off: a customer with
+ * {@code loans} loans of 12 installments, read through {@link LoanService} and the repositories.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SecondLevelCacheBenchmark {
+
+    private static final BigDecimal AMOUNT = BigDecimal.valueOf(1_000);
+    private static final BigDecimal INTEREST_RATE = new BigDecimal("0.2");
+
+    @Param({"true", "false"})
+    public boolean l2Cache;
+
+    @Param({"10", "100"})
+    public int loans;
+
+    private ConfigurableApplicationContext context;
+    private LoanService loanService;
+    private CustomerRepository customerRepository;
+    private LoanRepository loanRepository;
+    private Long customerId;
+    private Long loanId;
+
+    @Setup(Level.Trial)
+    public void boot() {
+        String database = "jmh-" + UUID.randomUUID();
+        context = new SpringApplicationBuilder(CreditModuleApplication.class)
+                .properties(
+                        "spring.datasource.url=jdbc:h2:mem:" + database + ";DB_CLOSE_DELAY=-1",
+                        "credit.reactive.url=r2dbc:h2:mem:///" + database + ";DB_CLOSE_DELAY=-1",
+                        "credit.journal.dir=target/journal/" + database,
+                        "credit.l2-cache.enabled=" + l2Cache,
+                        "spring.jpa.hibernate.ddl-auto=create-drop",
+                        "spring.main.banner-mode=off",
+                        "logging.level.root=WARN",
+                        "server.port=0",
+                        "credit.accrual.cron=-")
+                .run();
+        loanService = context.getBean(LoanService.class);
+        customerRepository = context.getBean(CustomerRepository.class);
+        loanRepository = context.getBean(LoanRepository.class);
+
+        customerId = TestCustomers.newCustomer(customerRepository, 1_000_000_000_000L).getId();
+        for (int i = 0; i < loans; i++) {
+            loanService.createLoan(customerId, AMOUNT, INTEREST_RATE, 12);
+        }
+        loanId = loanService.listLoans(customerId).get(loans / 2).getId();
+    }
+
+    @TearDown(Level.Trial)
+    public void shutdown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<Loan> listLoans() {
+        return loanService.listLoans(customerId);
+    }
+
+    @Benchmark
+    public List<LoanInstallment> listInstallments() {
+        return loanService.listInstallments(loanId);
+    }
+
+    @Benchmark
+    public Object findById() {
+        return new Object[]{customerRepository.findById(customerId), loanRepository.findById(loanId)};
+    }
+}
@@ -0,0 +1,435 @@
+package com.example.creditmodule.load;
+
+import com.example.creditmodule.CreditModuleApplication;
+import com.example.creditmodule.DataLoader;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Boots the application on a private in-memory H2 database and drives its real HTTP stack, with
+ * security, controller and repositories all in the path, from many concurrent clients.
+ *
+ * <p>Seed customers come from {@link DataLoader} ({@code credit.seed.customer-count}), and each one
+ * gets one loan before the run starts. Every client then picks a random seed customer and a random
+ * operation from the configured mix, authenticating as that customer. After the warm-up, latencies
+ * are recorded per operation and reported as p50/p99/p999 along with requests per second.
+ *
+ * <pre>
+ * mvn -P load -DskipTests verify -Dload.args="--clients=64 --duration=60s --mix=create:10,list:40,installments:30,pay:20"
+ * </pre>
+ * Arguments this class does not recognise are passed to Spring, e.g.
+ * {@code --spring.profiles.active=...}.
+ *
+ * <p>{@code --modes=platform,virtual} runs the same scenario once per threading mode, each against
+ * a freshly booted application (the {@code virtual} Spring profile for virtual threads), and prints
+ * a side-by-side summary. Both modes run with the {@code high-concurrency} profile's connection pool
+ * and Tomcat limits.
+ */
+public final class LoadDriver {
+
+    enum Operation { CREATE, LIST, INSTALLMENTS, PAY }
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private final Options options;
+    private final HttpClient client;
+    private final String baseUrl;
+    private final List<SeedCustomer> customers;
+    private final String reportFile;
+
+    private LoadDriver(Options options, int port, List<SeedCustomer> customers, String reportFile) {
+        this.options = options;
+        this.reportFile = reportFile;
+        this.baseUrl = "http://localhost:" + port + "/api/loans";
+        this.customers = customers;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = Options.parse(args);
+        if (options.modes().isEmpty()) {
+            runOnce(options, options.springArgs(), options.report());
+            return;
+        }
+
+        Map<String, Map<String, Object>> results = new LinkedHashMap<>();
+        for (String mode : options.modes()) {
+            List<String> springArgs = new ArrayList<>(List.of(options.springArgs()));
+            switch (mode) {
+                // Both modes get the same pool and connector sizing, so only the request threads differ
+                case "platform" -> {
+                    springArgs.add("--spring.profiles.active=high-concurrency");
+                    springArgs.add("--spring.threads.virtual.enabled=false");
+                }
+                case "virtual" -> springArgs.add("--spring.profiles.active=virtual");
+                default -> throw new IllegalArgumentException("Unknown mode " + mode + ", expected platform or virtual");
+            }
+            String report = options.report().replaceFirst("(\\.json)?$", "-" + mode + ".json");
+            System.out.printf("%n=== %s threads ===%n", mode);
+            results.put(mode, runOnce(options, springArgs.toArray(String[]::new), report));
+        }
+
+        System.out.printf("%n%-10s %9s %9s %9s %9s %7s%n", "mode", "req/s", "p50 ms", "p99 ms", "p999 ms", "errors");
+        results.forEach((mode, all) -> System.out.printf("%-10s %9.1f %9.2f %9.2f %9.2f %7d%n", mode,
+                all.get("requestsPerSecond"), all.get("p50Millis"), all.get("p99Millis"), all.get("p999Millis"),
+                all.get("errors")));
+    }
+
+    private static Map<String, Object> runOnce(Options options, String[] springArgs, String reportFile) throws Exception {
+        String database = "load-" + UUID.randomUUID();
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(CreditModuleApplication.class)
+                .properties(
+                        "spring.datasource.url=jdbc:h2:mem:" + database + ";DB_CLOSE_DELAY=-1",
+                        "credit.reactive.url=r2dbc:h2:mem:///" + database + ";DB_CLOSE_DELAY=-1",
+                        "credit.journal.dir=target/journal/" + database,
+                        "spring.jpa.hibernate.ddl-auto=create-drop",
+                        "spring.main.banner-mode=off",
+                        "logging.level.root=WARN",
+                        "server.port=0",
+                        "credit.accrual.cron=-",
+                        "credit.metrics.slow-request-threshold=1h",
+                        "credit.seed.customer-count=" + options.customers,
+                        "credit.seed.password=" + options.password,
+                        "credit.seed.credit-limit=1000000000000")
+                .run(springArgs);
+        try {
+            int port = Integer.parseInt(context.getEnvironment().getRequiredProperty("local.server.port"));
+            List<SeedCustomer> customers = context.getBean(JdbcTemplate.class).query(
+                    "select u.username, u.customer_id from app_user u where u.username like ?",
+                    (rs, row) -> new SeedCustomer(rs.getString(1), rs.getLong(2), options.password),
+                    DataLoader.SEED_USERNAME_PREFIX + "%");
+            return new LoadDriver(options, port, customers, reportFile).run();
+        } finally {
+            context.close();
+        }
+    }
+
+    private Map<String, Object> run() throws Exception {
+        System.out.printf("Preparing %d customers...%n", customers.size());
+        ExecutorService clients = Executors.newFixedThreadPool(options.clients);
+        try {
+            List<Future<?>> preparation = new ArrayList<>();
+            for (SeedCustomer customer : customers) {
+                preparation.add(clients.submit(() -> prepare(customer)));
+            }
+            for (Future<?> future : preparation) {
+                future.get();
+            }
+
+            System.out.printf("Running %d clients: %s warm-up, %s measured, mix %s%n",
+                    options.clients, options.warmup, options.duration, options.mix);
+            long start = System.nanoTime();
+            long measureFrom = start + options.warmup.toNanos();
+            long measureUntil = measureFrom + options.duration.toNanos();
+            List<Future<Recorder>> workers = new ArrayList<>();
+            for (int i = 0; i < options.clients; i++) {
+                workers.add(clients.submit(() -> drive(measureFrom, measureUntil)));
+            }
+            Recorder total = new Recorder();
+            for (Future<Recorder> worker : workers) {
+                total.merge(worker.get());
+            }
+            return report(total, options.duration);
+        } finally {
+            clients.shutdownNow();
+        }
+    }
+
+    private Void prepare(SeedCustomer customer) throws IOException, InterruptedException {
+        send(customer, Operation.CREATE);
+        HttpResponse<String> response = client.send(
+                get(customer, "/list?customerId=" + customer.customerId()), HttpResponse.BodyHandlers.ofString());
+        for (JsonNode loan : JSON.readTree(response.body())) {
+            customer.loanIds().add(loan.get("id").asLong());
+        }
+        return null;
+    }
+
+    private Recorder drive(long measureFrom, long measureUntil) {
+        Recorder recorder = new Recorder();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long now;
+        while ((now = System.nanoTime()) < measureUntil) {
+            SeedCustomer customer = customers.get(random.nextInt(customers.size()));
+            Operation operation = options.mix.pick(random.nextInt(options.mix.totalWeight()));
+            boolean success;
+            try {
+                success = send(customer, operation);
+            } catch (IOException e) {
+                success = false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            long end = System.nanoTime();
+            if (now >= measureFrom) {
+                recorder.record(operation, end - now, success);
+            }
+        }
+        return recorder;
+    }
+
+    private boolean send(SeedCustomer customer, Operation operation) throws IOException, InterruptedException {
+        HttpRequest request = switch (operation) {
+            case CREATE -> post(customer, "/create?customerId=" + customer.customerId()
+                    + "&amount=10000&interestRate=0.2&installments=24");
+            case LIST -> get(customer, "/list?customerId=" + customer.customerId());
+            case INSTALLMENTS -> get(customer, "/" + customer.anyLoan() + "/installments");
+            case PAY -> post(customer, "/pay?loanId=" + customer.anyLoan() + "&paymentAmount=500");
+        };
+        int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+        return status >= 200 && status < 300;
+    }
+
+    private HttpRequest get(SeedCustomer customer, String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .header("Authorization", customer.authorization())
+                .GET()
+                .build();
+    }
+
+    private HttpRequest post(SeedCustomer customer, String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .header("Authorization", customer.authorization())
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .build();
+    }
+
+    private Map<String, Object> report(Recorder recorder, Duration duration) throws IOException {
+        double seconds = duration.toNanos() / 1e9;
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("clients", options.clients);
+        report.put("customers", customers.size());
+        report.put("durationSeconds", seconds);
+        report.put("mix", options.mix.toString());
+
+        System.out.printf("%n%-13s %9s %7s %9s %9s %9s %9s%n",
+                "operation", "requests", "errors", "req/s", "p50 ms", "p99 ms", "p999 ms");
+        Map<String, Object> operations = new LinkedHashMap<>();
+        for (Operation operation : Operation.values()) {
+            long[] latencies = recorder.latencies(operation);
+            if (latencies.length > 0) {
+                operations.put(operation.name().toLowerCase(), summarize(operation.name().toLowerCase(),
+                        latencies, recorder.errors(operation), seconds));
+            }
+        }
+        Map<String, Object> all = summarize("all", recorder.allLatencies(), recorder.totalErrors(), seconds);
+        report.put("operations", operations);
+        report.put("all", all);
+
+        Path file = Path.of(reportFile);
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        JSON.writerWithDefaultPrettyPrinter().writeValue(file.toFile(), report);
+        System.out.printf("%nReport written to %s%n", file.toAbsolutePath());
+        return all;
+    }
+
+    private static Map<String, Object> summarize(String name, long[] latencies, long errors, double seconds) {
+        Arrays.sort(latencies);
+        double rps = latencies.length / seconds;
+        double p50 = percentile(latencies, 0.50);
+        double p99 = percentile(latencies, 0.99);
+        double p999 = percentile(latencies, 0.999);
+        System.out.printf("%-13s %9d %7d %9.1f %9.2f %9.2f %9.2f%n",
+                name, latencies.length, errors, rps, p50, p99, p999);
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("requests", latencies.length);
+        summary.put("errors", errors);
+        summary.put("requestsPerSecond", rps);
+        summary.put("p50Millis", p50);
+        summary.put("p99Millis", p99);
+        summary.put("p999Millis", p999);
+        return summary;
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))] / 1e6;
+    }
+
+    record SeedCustomer(String username, long customerId, String authorization, List<Long> loanIds) {
+
+        SeedCustomer(String username, long customerId, String password) {
+            this(username, customerId, "Basic " + Base64.getEncoder().encodeToString(
+                    (username + ":" + password).getBytes(StandardCharsets.UTF_8)), new ArrayList<>());
+        }
+
+        long anyLoan() {
+            return loanIds.get(ThreadLocalRandom.current().nextInt(loanIds.size()));
+        }
+    }
+
+    /** Per-client latency buffer; merged once at the end so recording never contends. */
+    static final class Recorder {
+        private final Map<Operation, long[]> latencies = new EnumMap<>(Operation.class);
+        private final Map<Operation, Integer> counts = new EnumMap<>(Operation.class);
+        private final Map<Operation, Long> errors = new EnumMap<>(Operation.class);
+
+        void record(Operation operation, long nanos, boolean success) {
+            long[] buffer = latencies.computeIfAbsent(operation, op -> new long[1024]);
+            int count = counts.getOrDefault(operation, 0);
+            if (count == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                latencies.put(operation, buffer);
+            }
+            buffer[count] = nanos;
+            counts.put(operation, count + 1);
+            if (!success) {
+                errors.merge(operation, 1L, Long::sum);
+            }
+        }
+
+        void merge(Recorder other) {
+            for (Operation operation : Operation.values()) {
+                long[] theirs = other.latencies(operation);
+                for (int i = 0; i < theirs.length; i++) {
+                    record(operation, theirs[i], true);
+                }
+                errors.merge(operation, other.errors(operation), Long::sum);
+            }
+        }
+
+        long[] latencies(Operation operation) {
+            long[] buffer = latencies.get(operation);
+            return buffer == null ? new long[0] : Arrays.copyOf(buffer, counts.get(operation));
+        }
+
+        long[] allLatencies() {
+            return Arrays.stream(Operation.values())
+                    .flatMapToLong(operation -> Arrays.stream(latencies(operation)))
+                    .toArray();
+        }
+
+        long errors(Operation operation) {
+            return errors.getOrDefault(operation, 0L);
+        }
+
+        long totalErrors() {
+            return errors.values().stream().mapToLong(Long::longValue).sum();
+        }
+    }
+
+    /** Weighted operation mix, e.g. {@code create:10,list:40,installments:30,pay:20}. */
+    record Mix(Operation[] operations, int[] cumulativeWeights, String spec) {
+
+        static Mix parse(String spec) {
+            List<Operation> operations = new ArrayList<>();
+            List<Integer> cumulative = new ArrayList<>();
+            int total = 0;
+            for (String part : spec.split(",")) {
+                String[] pair = part.trim().split(":");
+                if (pair.length != 2) {
+                    throw new IllegalArgumentException("Mix entries must look like operation:weight, got " + part);
+                }
+                int weight = Integer.parseInt(pair[1].trim());
+                if (weight > 0) {
+                    total += weight;
+                    operations.add(Operation.valueOf(pair[0].trim().toUpperCase()));
+                    cumulative.add(total);
+                }
+            }
+            if (total == 0) {
+                throw new IllegalArgumentException("Mix must have at least one positive weight");
+            }
+            return new Mix(operations.toArray(Operation[]::new),
+                    cumulative.stream().mapToInt(Integer::intValue).toArray(), spec);
+        }
+
+        int totalWeight() {
+            return cumulativeWeights[cumulativeWeights.length - 1];
+        }
+
+        Operation pick(int ticket) {
+            for (int i = 0; i < cumulativeWeights.length; i++) {
+                if (ticket < cumulativeWeights[i]) {
+                    return operations[i];
+                }
+            }
+            return operations[operations.length - 1];
+        }
+
+        @Override
+        public String toString() {
+            return spec;
+        }
+    }
+
+    record Options(int customers, int clients, Duration warmup, Duration duration, Mix mix,
+                   String password, String report, List<String> modes, String[] springArgs) {
+
+        static Options parse(String[] args) {
+            Map<String, String> values = new LinkedHashMap<>(Map.of(
+                    "customers", "200",
+                    "clients", "32",
+                    "warmup", "10s",
+                    "duration", "30s",
+                    "mix", "create:10,list:40,installments:30,pay:20",
+                    "password", "loadpass",
+                    "report", "target/load-report.json",
+                    "modes", ""));
+            List<String> springArgs = new ArrayList<>();
+            for (String arg : args) {
+                int equals = arg.indexOf('=');
+                String key = arg.startsWith("--") && equals > 0 ? arg.substring(2, equals) : null;
+                if (key != null && values.containsKey(key)) {
+                    values.put(key, arg.substring(equals + 1));
+                } else {
+                    springArgs.add(arg);
+                }
+            }
+            return new Options(
+                    Integer.parseInt(values.get("customers")),
+                    Integer.parseInt(values.get("clients")),
+                    parseDuration(values.get("warmup")),
+                    parseDuration(values.get("duration")),
+                    Mix.parse(values.get("mix")),
+                    values.get("password"),
+                    values.get("report"),
+                    values.get("modes").isBlank() ? List.of() : List.of(values.get("modes").split(",")),
+                    springArgs.toArray(String[]::new));
+        }
+
+        private static Duration parseDuration(String value) {
+            String number = value.replaceAll("[^0-9]", "");
+            return switch (value.replaceAll("[0-9]", "")) {
+                case "ms" -> Duration.ofMillis(Long.parseLong(number));
+                case "", "s" -> Duration.ofSeconds(Long.parseLong(number));
+                case "m" -> Duration.ofMinutes(Long.parseLong(number));
+                default -> throw new IllegalArgumentException("Unsupported duration " + value);
+            };
+        }
+    }
+}
@@ -2,8 +2,14 @@ package com.example.creditmodule;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcAutoConfiguration;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcTransactionManagerAutoConfiguration;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
-@SpringBootApplication
+// A ConnectionFactory bean would switch off the JDBC DataSource and JPA transaction manager, so the
+// reactive read path (LoanStreamReader) owns its pool instead of relying on the R2DBC auto-configuration
+@SpringBootApplication(exclude = {R2dbcAutoConfiguration.class, R2dbcTransactionManagerAutoConfiguration.class})
+@EnableScheduling
 public class CreditModuleApplication {
 
     public static void main(String[] args) {
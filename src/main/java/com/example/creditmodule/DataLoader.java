@@ -3,20 +3,35 @@ package com.example.creditmodule;
 import com.example.creditmodule.module.Customer;
 import com.example.creditmodule.module.User;
 import com.example.creditmodule.repository.CustomerRepository;
+import com.example.creditmodule.repository.LoanRepository;
 import com.example.creditmodule.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.context.annotation.Bean;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Component;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
 
 @Component
 public class DataLoader {
 
+    public static final String SEED_USERNAME_PREFIX = "customer-";
+
     @Bean
-    public CommandLineRunner initDatabase(UserRepository userRepository, CustomerRepository customerRepository, PasswordEncoder passwordEncoder) {
+    public CommandLineRunner initDatabase(UserRepository userRepository, CustomerRepository customerRepository, PasswordEncoder passwordEncoder,
+                                          LoanRepository loanRepository,
+                                          @Value("${credit.seed.customer-count:0}") int seedCustomerCount,
+                                          @Value("${credit.seed.password:customerpass}") String seedPassword,
+                                          @Value("${credit.seed.credit-limit:50000}") BigDecimal seedCreditLimit) {
         return args -> {
+            int backfilled = loanRepository.backfillRemainingInstallments();
+            if (backfilled > 0) {
+                System.out.println("Remaining installment counts backfilled for " + backfilled + " loans.");
+            }
+
             if (userRepository.findByUsername("admin").isEmpty()) {
                 User adminUser = new User();
                 adminUser.setUsername("admin");
@@ -46,6 +61,38 @@ public class DataLoader {
             } else {
                 System.out.println("Customer user already exists.");
             }
+
+            if (seedCustomerCount > 0 && userRepository.findByUsername(SEED_USERNAME_PREFIX + 1).isEmpty()) {
+                seedCustomers(userRepository, customerRepository, passwordEncoder.encode(seedPassword),
+                        seedCustomerCount, seedCreditLimit);
+                System.out.println(seedCustomerCount + " seed customers created.");
+            }
         };
     }
-}
\ No newline at end of file
+
+    // Every seed user shares one password, so it is hashed once instead of once per user
+    private void seedCustomers(UserRepository userRepository, CustomerRepository customerRepository, String passwordHash,
+                               int count, BigDecimal creditLimit) {
+        List<Customer> customers = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            Customer customer = new Customer();
+            customer.setName("Seed");
+            customer.setSurname("Customer " + i);
+            customer.setCreditLimit(creditLimit);
+            customer.setUsedCreditLimit(BigDecimal.ZERO);
+            customers.add(customer);
+        }
+        customers = customerRepository.saveAll(customers);
+
+        List<User> users = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            User user = new User();
+            user.setUsername(SEED_USERNAME_PREFIX + i);
+            user.setPassword(passwordHash);
+            user.setRole("CUSTOMER");
+            user.setCustomer(customers.get(i - 1));
+            users.add(user);
+        }
+        userRepository.saveAll(users);
+    }
+}
@@ -0,0 +1,278 @@
+package com.example.creditmodule.analytics;
+
+import com.example.creditmodule.module.CreditTotals;
+import com.example.creditmodule.module.DueDateExposure;
+import com.example.creditmodule.module.LoanInstallment;
+import com.example.creditmodule.module.PortfolioRisk;
+import com.example.creditmodule.repository.CustomerRepository;
+import com.example.creditmodule.repository.LoanInstallmentRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Portfolio-wide risk figures kept in memory, so asking for them never scans the loan tables.
+ * <p>
+ * Unpaid installment principal is held per due date and the customers' credit limits as running
+ * totals. Loan creation and payments report what they wrote, and the change is applied once their
+ * transaction commits; a rolled back transaction changes nothing. Overdue aging is worked out from
+ * the due dates at read time, so it moves with the calendar without any writes. The cost of a read
+ * grows with the number of distinct due dates, not with the number of loans.
+ * <p>
+ * On startup and then periodically the totals are rebuilt from the database. This picks up whatever
+ * was written without going through here (customers created or limits changed directly, rows edited
+ * by hand) and logs the drift it corrected. Changes committing while the rebuild reads are applied to
+ * the rebuilt totals as well; one committing in the instant the read starts may be counted twice
+ * until the next pass.
+ */
+@Component
+public class PortfolioAnalytics {
+
+    private static final Logger log = LoggerFactory.getLogger(PortfolioAnalytics.class);
+
+    // Last day overdue of every aging bucket but the open-ended one; an installment is overdue from the day after it falls due
+    private static final int[] AGING_LIMITS = {30, 60, 90};
+    private static final String[] AGING_RANGES = {"0-30", "31-60", "61-90", "90+"};
+
+    private final LoanInstallmentRepository installmentRepository;
+    private final CustomerRepository customerRepository;
+    private final AtomicBoolean reconciling = new AtomicBoolean();
+
+    // Everything below is guarded by this
+    private final NavigableMap<LocalDate, Totals> unpaidByDueDate = new TreeMap<>();
+    private long customers;
+    private BigDecimal creditLimit = BigDecimal.ZERO;
+    private BigDecimal usedCreditLimit = BigDecimal.ZERO;
+    private LocalDateTime reconciledAt;
+    // Changes committed while a rebuild is reading the database, null outside of one
+    private List<DueDateExposure> racingInstallments;
+    private List<BigDecimal> racingCredit;
+
+    public PortfolioAnalytics(LoanInstallmentRepository installmentRepository,
+                              CustomerRepository customerRepository) {
+        this.installmentRepository = installmentRepository;
+        this.customerRepository = customerRepository;
+    }
+
+    /**
+     * Adds newly scheduled installments to the exposure once the current transaction commits.
+     */
+    public void installmentsScheduled(List<LoanInstallment> installments) {
+        List<DueDateExposure> changes = changes(installments, 1);
+        afterCommit(() -> applyInstallments(changes));
+    }
+
+    /**
+     * Takes paid installments off the exposure once the current transaction commits.
+     */
+    public void installmentsPaid(List<LoanInstallment> installments) {
+        List<DueDateExposure> changes = changes(installments, -1);
+        afterCommit(() -> applyInstallments(changes));
+    }
+
+    /**
+     * Adds {@code amount} to the used credit once the current transaction commits; releases are negative.
+     */
+    public void creditUsed(BigDecimal amount) {
+        afterCommit(() -> applyCredit(amount));
+    }
+
+    public synchronized PortfolioRisk risk(LocalDate asOf) {
+        BigDecimal exposure = BigDecimal.ZERO;
+        long openInstallments = 0;
+        long[] overdueCounts = new long[AGING_RANGES.length];
+        BigDecimal[] overdueAmounts = new BigDecimal[AGING_RANGES.length];
+        Arrays.fill(overdueAmounts, BigDecimal.ZERO);
+
+        for (Map.Entry<LocalDate, Totals> entry : unpaidByDueDate.entrySet()) {
+            Totals totals = entry.getValue();
+            exposure = exposure.add(totals.amount);
+            openInstallments += totals.installments;
+            long daysOverdue = ChronoUnit.DAYS.between(entry.getKey(), asOf);
+            if (daysOverdue > 0) {
+                int bucket = agingBucket(daysOverdue);
+                overdueCounts[bucket] += totals.installments;
+                overdueAmounts[bucket] = overdueAmounts[bucket].add(totals.amount);
+            }
+        }
+
+        List<PortfolioRisk.AgingBucket> overdue = new ArrayList<>(AGING_RANGES.length);
+        for (int i = 0; i < AGING_RANGES.length; i++) {
+            int minDays = i == 0 ? 1 : AGING_LIMITS[i - 1] + 1;
+            Integer maxDays = i < AGING_LIMITS.length ? AGING_LIMITS[i] : null;
+            overdue.add(new PortfolioRisk.AgingBucket(AGING_RANGES[i], minDays, maxDays, overdueCounts[i], overdueAmounts[i]));
+        }
+        BigDecimal utilization = creditLimit.signum() == 0
+                ? BigDecimal.ZERO
+                : usedCreditLimit.divide(creditLimit, 4, RoundingMode.HALF_UP);
+        return new PortfolioRisk(asOf, exposure, openInstallments, customers, creditLimit, usedCreditLimit,
+                utilization, overdue, reconciledAt);
+    }
+
+    /**
+     * Rebuilds the totals from the database. This is the only place that scans the loan tables.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${credit.analytics.reconcile-cron:0 */15 * * * *}")
+    public void reconcile() {
+        if (!reconciling.compareAndSet(false, true)) {
+            log.warn("Portfolio reconciliation skipped, a pass is already in progress");
+            return;
+        }
+        try {
+            reconcileInstallments();
+            reconcileCredit();
+            synchronized (this) {
+                reconciledAt = LocalDateTime.now();
+            }
+        } finally {
+            reconciling.set(false);
+        }
+    }
+
+    private void reconcileInstallments() {
+        synchronized (this) {
+            racingInstallments = new ArrayList<>();
+        }
+        NavigableMap<LocalDate, Totals> rebuilt = new TreeMap<>();
+        try {
+            for (DueDateExposure row : installmentRepository.sumUnpaidByDueDate()) {
+                add(rebuilt, row);
+            }
+        } finally {
+            synchronized (this) {
+                for (DueDateExposure change : racingInstallments) {
+                    add(rebuilt, change);
+                }
+                racingInstallments = null;
+            }
+        }
+        synchronized (this) {
+            Totals before = sum(unpaidByDueDate);
+            Totals after = sum(rebuilt);
+            if (reconciledAt != null && (before.installments != after.installments || before.amount.compareTo(after.amount) != 0)) {
+                log.warn("Portfolio exposure drifted: {} over {} installments in memory, {} over {} in the database",
+                        before.amount, before.installments, after.amount, after.installments);
+            }
+            unpaidByDueDate.clear();
+            unpaidByDueDate.putAll(rebuilt);
+        }
+    }
+
+    private void reconcileCredit() {
+        synchronized (this) {
+            racingCredit = new ArrayList<>();
+        }
+        CreditTotals totals;
+        BigDecimal racing = BigDecimal.ZERO;
+        try {
+            totals = customerRepository.sumCredit();
+        } finally {
+            synchronized (this) {
+                for (BigDecimal change : racingCredit) {
+                    racing = racing.add(change);
+                }
+                racingCredit = null;
+            }
+        }
+        BigDecimal used = totals.usedCreditLimit().add(racing);
+        synchronized (this) {
+            if (reconciledAt != null && (usedCreditLimit.compareTo(used) != 0 || creditLimit.compareTo(totals.creditLimit()) != 0)) {
+                log.warn("Portfolio credit drifted: {} of {} used in memory, {} of {} in the database",
+                        usedCreditLimit, creditLimit, used, totals.creditLimit());
+            }
+            customers = totals.customers();
+            creditLimit = totals.creditLimit();
+            usedCreditLimit = used;
+        }
+    }
+
+    private synchronized void applyInstallments(List<DueDateExposure> changes) {
+        for (DueDateExposure change : changes) {
+            add(unpaidByDueDate, change);
+        }
+        if (racingInstallments != null) {
+            racingInstallments.addAll(changes);
+        }
+    }
+
+    private synchronized void applyCredit(BigDecimal amount) {
+        usedCreditLimit = usedCreditLimit.add(amount);
+        if (racingCredit != null) {
+            racingCredit.add(amount);
+        }
+    }
+
+    private static void afterCommit(Runnable change) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    change.run();
+                }
+            });
+        } else {
+            change.run();
+        }
+    }
+
+    // Copies what the totals need now; the entities may change before the transaction commits
+    private static List<DueDateExposure> changes(List<LoanInstallment> installments, int sign) {
+        List<DueDateExposure> changes = new ArrayList<>(installments.size());
+        for (LoanInstallment installment : installments) {
+            BigDecimal amount = sign < 0 ? installment.getAmount().negate() : installment.getAmount();
+            changes.add(new DueDateExposure(installment.getDueDate(), sign, amount));
+        }
+        return changes;
+    }
+
+    private static void add(NavigableMap<LocalDate, Totals> book, DueDateExposure change) {
+        Totals totals = book.computeIfAbsent(change.dueDate(), dueDate -> new Totals());
+        totals.installments += change.installments();
+        totals.amount = totals.amount.add(change.amount());
+        if (totals.installments == 0 && totals.amount.signum() == 0) {
+            book.remove(change.dueDate());
+        }
+    }
+
+    private static Totals sum(NavigableMap<LocalDate, Totals> book) {
+        Totals sum = new Totals();
+        for (Totals totals : book.values()) {
+            sum.installments += totals.installments;
+            sum.amount = sum.amount.add(totals.amount);
+        }
+        return sum;
+    }
+
+    private static int agingBucket(long daysOverdue) {
+        for (int i = 0; i < AGING_LIMITS.length; i++) {
+            if (daysOverdue <= AGING_LIMITS[i]) {
+                return i;
+            }
+        }
+        return AGING_LIMITS.length;
+    }
+
+    private static final class Totals {
+        long installments;
+        BigDecimal amount = BigDecimal.ZERO;
+    }
+}
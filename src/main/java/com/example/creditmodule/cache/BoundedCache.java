@@ -0,0 +1,132 @@
+package com.example.creditmodule.cache;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * A small thread-safe LRU map with a hard entry limit, an optional time-to-live and hit/miss
+ * counters. Values are computed outside the lock, so a slow loader never blocks readers of other
+ * keys; two threads missing the same key at once may both compute it, which is fine for the
+ * idempotent lookups this is used for. Expired entries are dropped lazily when they are read.
+ */
+public class BoundedCache<K, V> {
+
+    private final int maximumSize;
+    private final long timeToLiveNanos;
+    private final LongSupplier ticker;
+    private final LinkedHashMap<K, Entry<V>> entries;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public BoundedCache(int maximumSize) {
+        this(maximumSize, null, System::nanoTime);
+    }
+
+    public BoundedCache(int maximumSize, Duration timeToLive) {
+        this(maximumSize, timeToLive, System::nanoTime);
+    }
+
+    public BoundedCache(int maximumSize, Duration timeToLive, LongSupplier ticker) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("Maximum size must be positive");
+        }
+        if (timeToLive != null && (timeToLive.isNegative() || timeToLive.isZero())) {
+            throw new IllegalArgumentException("Time to live must be positive");
+        }
+        this.maximumSize = maximumSize;
+        this.timeToLiveNanos = timeToLive == null ? Long.MAX_VALUE : timeToLive.toNanos();
+        this.ticker = ticker;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                if (size() > BoundedCache.this.maximumSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public V get(K key) {
+        V value = null;
+        synchronized (entries) {
+            Entry<V> entry = entries.get(key);
+            if (entry != null) {
+                if (entry.isExpired(ticker.getAsLong())) {
+                    entries.remove(key);
+                    evictions.increment();
+                } else {
+                    value = entry.value();
+                }
+            }
+        }
+        (value == null ? misses : hits).increment();
+        return value;
+    }
+
+    public void put(K key, V value) {
+        long expiresAt = timeToLiveNanos == Long.MAX_VALUE ? Long.MAX_VALUE : ticker.getAsLong() + timeToLiveNanos;
+        synchronized (entries) {
+            entries.put(key, new Entry<>(value, expiresAt));
+        }
+    }
+
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> loader) {
+        V value = get(key);
+        if (value == null) {
+            value = loader.apply(key);
+            if (value != null) {
+                put(key, value);
+            }
+        }
+        return value;
+    }
+
+    public void invalidate(K key) {
+        synchronized (entries) {
+            entries.remove(key);
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+    public double hitRate() {
+        long hitCount = hitCount();
+        long requests = hitCount + missCount();
+        return requests == 0 ? 0 : (double) hitCount / requests;
+    }
+
+    private record Entry<V>(V value, long expiresAt) {
+        boolean isExpired(long now) {
+            return expiresAt != Long.MAX_VALUE && now - expiresAt >= 0;
+        }
+    }
+}
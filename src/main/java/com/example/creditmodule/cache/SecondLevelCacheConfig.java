@@ -0,0 +1,99 @@
+package com.example.creditmodule.cache;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.JCacheMetrics;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+import java.time.Duration;
+import java.util.OptionalLong;
+import java.util.UUID;
+
+/**
+ * Hibernate second-level cache on Caffeine, for the entities reads far outnumber writes on: customers,
+ * loans and installments, plus the results of queries marked cacheable.
+ * <p>
+ * Every region is bounded by entry count and expires entries a while after they were written, so rows
+ * changed behind Hibernate's back by another instance are not served forever. Writes through Hibernate
+ * keep the regions exact: updated entities are replaced on commit, JPQL bulk updates drop their
+ * entity's region, and a cached query result is discarded as soon as any of its tables is written.
+ * Code writing these tables with plain JDBC must evict what it touched, see {@code PenaltyAccrualJob}.
+ * <p>
+ * Each application context gets its own cache manager, so contexts sharing a JVM (as tests do) never
+ * see each other's entries.
+ */
+@Configuration
+public class SecondLevelCacheConfig {
+
+    public static final String CUSTOMER_REGION = "customer";
+    public static final String LOAN_REGION = "loan";
+    public static final String INSTALLMENT_REGION = "loanInstallment";
+
+    private static final String QUERY_RESULTS_REGION = "default-query-results-region";
+    private static final String UPDATE_TIMESTAMPS_REGION = "default-update-timestamps-region";
+
+    @Bean(destroyMethod = "close")
+    public CacheManager hibernateCacheManager(
+            MeterRegistry meterRegistry,
+            @Value("${credit.l2-cache.customers:10000}") long maxCustomers,
+            @Value("${credit.l2-cache.loans:100000}") long maxLoans,
+            @Value("${credit.l2-cache.installments:1000000}") long maxInstallments,
+            @Value("${credit.l2-cache.queries:10000}") long maxQueries,
+            @Value("${credit.l2-cache.ttl:10m}") Duration timeToLive,
+            @Value("${credit.l2-cache.statistics:true}") boolean statistics) {
+        CacheManager cacheManager = Caching.getCachingProvider(CaffeineCachingProvider.class.getName())
+                .getCacheManager(URI.create("urn:credit-module:" + UUID.randomUUID()), getClass().getClassLoader());
+        createRegion(cacheManager, CUSTOMER_REGION, OptionalLong.of(maxCustomers), timeToLive, statistics);
+        createRegion(cacheManager, LOAN_REGION, OptionalLong.of(maxLoans), timeToLive, statistics);
+        createRegion(cacheManager, INSTALLMENT_REGION, OptionalLong.of(maxInstallments), timeToLive, statistics);
+        createRegion(cacheManager, QUERY_RESULTS_REGION, OptionalLong.of(maxQueries), timeToLive, statistics);
+        // Hibernate requires the timestamps to outlive every query result; there is one entry per table
+        createRegion(cacheManager, UPDATE_TIMESTAMPS_REGION, OptionalLong.empty(), null, statistics);
+
+        if (statistics) {
+            for (String region : cacheManager.getCacheNames()) {
+                JCacheMetrics.monitor(meterRegistry, cacheManager.getCache(region));
+            }
+        }
+        return cacheManager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCacheCustomizer(
+            CacheManager hibernateCacheManager,
+            @Value("${credit.l2-cache.enabled:true}") boolean enabled) {
+        return properties -> {
+            if (!enabled) {
+                properties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, false);
+                properties.put(AvailableSettings.USE_QUERY_CACHE, false);
+                return;
+            }
+            properties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, true);
+            properties.put(AvailableSettings.USE_QUERY_CACHE, true);
+            properties.put(AvailableSettings.CACHE_REGION_FACTORY, ConfigSettings.SIMPLE_FACTORY_NAME);
+            properties.put(ConfigSettings.CACHE_MANAGER, hibernateCacheManager);
+            // A region missing above is a mistake, not something to paper over with an unbounded default
+            properties.put(ConfigSettings.MISSING_CACHE_STRATEGY, "fail");
+        };
+    }
+
+    private static void createRegion(CacheManager cacheManager, String name, OptionalLong maximumSize,
+                                     Duration timeToLive, boolean statistics) {
+        CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+        configuration.setMaximumSize(maximumSize);
+        if (timeToLive != null) {
+            configuration.setExpireAfterWrite(OptionalLong.of(timeToLive.toNanos()));
+        }
+        configuration.setStatisticsEnabled(statistics);
+        cacheManager.createCache(name, configuration);
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.creditmodule.concurrent;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Runs the streaming responses ({@code StreamingResponseBody} bodies and {@code Flux} results written
+ * by Spring MVC) on a bounded pool. Without one, MVC falls back to a {@code SimpleAsyncTaskExecutor}
+ * that starts a new thread per request, so a burst of exports or bulk uploads could start threads
+ * without limit. Once all threads are busy and the queue is full, further streaming requests are
+ * rejected instead.
+ * <p>
+ * The pool is not exposed as a bean, so it does not displace Spring Boot's {@code applicationTaskExecutor}.
+ */
+@Configuration
+public class AsyncRequestConfig implements WebMvcConfigurer {
+
+    private final ThreadPoolTaskExecutor executor;
+
+    public AsyncRequestConfig(@Value("${credit.async.pool-size:32}") int poolSize,
+                              @Value("${credit.async.queue-capacity:200}") int queueCapacity) {
+        this.executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("mvc-async-");
+        executor.initialize();
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(executor);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.creditmodule.concurrent;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * A mailbox per key: tasks for the same key run one at a time in arrival order, tasks for different
+ * keys never wait for each other. Each key's mailbox is a chain of turns; a task waits for the turn
+ * before it, runs, and hands over to the next one. Mailboxes exist only while a key has work queued,
+ * so memory follows the number of busy keys, not the number of keys ever seen.
+ * <p>
+ * Tasks run on the caller's thread, so they can join the caller's transaction. A task that runs inside
+ * a transaction keeps its turn until that transaction completes; the next task for the key therefore
+ * never reads state the previous one has not committed yet. Nested calls for a key the thread already
+ * holds run straight away.
+ */
+public class KeyedSerialExecutor<K> {
+
+    private final ConcurrentMap<K, CompletableFuture<Void>> tails = new ConcurrentHashMap<>();
+    private final ThreadLocal<Set<K>> held = ThreadLocal.withInitial(HashSet::new);
+
+    public <T> T execute(K key, Supplier<T> task) {
+        Set<K> heldKeys = held.get();
+        if (heldKeys.contains(key)) {
+            return task.get();
+        }
+
+        CompletableFuture<Void> turn = new CompletableFuture<>();
+        CompletableFuture<?>[] previous = new CompletableFuture<?>[1];
+        tails.compute(key, (k, tail) -> {
+            previous[0] = tail;
+            return turn;
+        });
+        if (previous[0] != null) {
+            try {
+                previous[0].get();
+            } catch (InterruptedException e) {
+                // Our turn is already queued; pass it on only once the one before us is done
+                previous[0].whenComplete((result, failure) -> finish(key, turn));
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for " + key, e);
+            } catch (ExecutionException e) {
+                // Turns are only ever completed normally
+            }
+        }
+
+        heldKeys.add(key);
+        try {
+            return task.get();
+        } finally {
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCompletion(int status) {
+                        heldKeys.remove(key);
+                        finish(key, turn);
+                    }
+                });
+            } else {
+                heldKeys.remove(key);
+                finish(key, turn);
+            }
+        }
+    }
+
+    /**
+     * Number of keys with a task running or waiting.
+     */
+    public int busyKeys() {
+        return tails.size();
+    }
+
+    private void finish(K key, CompletableFuture<Void> turn) {
+        tails.remove(key, turn);
+        turn.complete(null);
+    }
+}
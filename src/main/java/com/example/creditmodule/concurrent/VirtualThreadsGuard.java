@@ -0,0 +1,27 @@
+package com.example.creditmodule.concurrent;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Refuses to start with {@code spring.threads.virtual.enabled} (the {@code virtual} profile) on a Java
+ * runtime without virtual threads. Spring Boot would otherwise fall back to platform threads without a
+ * word, and a load comparison would measure the same mode twice.
+ */
+@Component
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+public class VirtualThreadsGuard {
+
+    static final int REQUIRED_FEATURE_VERSION = 21;
+
+    public VirtualThreadsGuard() {
+        check(Runtime.version().feature());
+    }
+
+    static void check(int featureVersion) {
+        if (featureVersion < REQUIRED_FEATURE_VERSION) {
+            throw new IllegalStateException("spring.threads.virtual.enabled needs Java " + REQUIRED_FEATURE_VERSION
+                    + " or later, but this runtime is Java " + featureVersion);
+        }
+    }
+}
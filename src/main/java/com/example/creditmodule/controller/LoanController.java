@@ -1,22 +1,59 @@
 package com.example.creditmodule.controller;
 
+import com.example.creditmodule.module.CustomerPayment;
+import com.example.creditmodule.module.KeysetPage;
+import com.example.creditmodule.module.Loan;
 import com.example.creditmodule.module.LoanInstallment;
+import com.example.creditmodule.module.LoanQuote;
+import com.example.creditmodule.module.LoanSummary;
+import com.example.creditmodule.module.PaymentBatchReport;
+import com.example.creditmodule.module.PaymentSimulation;
+import com.example.creditmodule.service.BulkLoanService;
+import com.example.creditmodule.service.IdempotentPaymentService;
+import com.example.creditmodule.service.LoanListingService;
 import com.example.creditmodule.service.LoanService;
+import com.example.creditmodule.service.LoanStreamReader;
+import com.example.creditmodule.service.PaymentBatchService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import reactor.core.publisher.Flux;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.util.List;
 
 @RestController
 @RequestMapping("/api/loans")
 public class LoanController {
 
+    private static final String TEXT_CSV = "text/csv";
+
     private final LoanService loanService;
+    private final BulkLoanService bulkLoanService;
+    private final PaymentBatchService paymentBatchService;
+    private final LoanStreamReader loanStreamReader;
+    private final LoanListingService loanListingService;
+    private final IdempotentPaymentService idempotentPaymentService;
 
-    public LoanController(LoanService loanService) {
+    public LoanController(LoanService loanService,
+                          BulkLoanService bulkLoanService,
+                          PaymentBatchService paymentBatchService,
+                          LoanStreamReader loanStreamReader,
+                          LoanListingService loanListingService,
+                          IdempotentPaymentService idempotentPaymentService) {
         this.loanService = loanService;
+        this.bulkLoanService = bulkLoanService;
+        this.paymentBatchService = paymentBatchService;
+        this.loanStreamReader = loanStreamReader;
+        this.loanListingService = loanListingService;
+        this.idempotentPaymentService = idempotentPaymentService;
     }
 
     @PostMapping("/create")
@@ -29,23 +66,130 @@ public class LoanController {
         return ResponseEntity.ok("Loan created successfully");
     }
 
+    @PostMapping(value = "/bulk-create",
+            consumes = {MediaType.APPLICATION_NDJSON_VALUE, TEXT_CSV},
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<StreamingResponseBody> bulkCreateLoans(HttpServletRequest request) throws IOException {
+        BulkLoanService.Format format = MediaType.parseMediaType(request.getContentType())
+                .isCompatibleWith(MediaType.APPLICATION_NDJSON) ? BulkLoanService.Format.NDJSON : BulkLoanService.Format.CSV;
+        InputStream body = request.getInputStream();
+        StreamingResponseBody results = output -> bulkLoanService.originate(body, format, output);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(results);
+    }
+
+    @GetMapping("/quote")
+    public ResponseEntity<LoanQuote> quoteLoan(@RequestParam BigDecimal amount,
+                                               @RequestParam BigDecimal interestRate,
+                                               @RequestParam int installments) {
+        return ResponseEntity.ok(loanService.quoteLoan(amount, interestRate, installments));
+    }
+
     @GetMapping("/list")
     @PreAuthorize("hasRole('ADMIN') or @loanService.isCustomerOwner(authentication.name, #customerId)")
     public ResponseEntity<List<?>> listLoans(@RequestParam Long customerId) {
         var loans = loanService.listLoans(customerId);
         return ResponseEntity.ok(loans);
     }
+
+    // NDJSON for pollers, written as the client consumes it; r2dbc-h2 still blocks a thread on each read
+    @GetMapping(value = "/list/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @PreAuthorize("hasRole('ADMIN') or @loanService.isCustomerOwner(authentication.name, #customerId)")
+    public Flux<Loan> streamLoans(@RequestParam Long customerId) {
+        return loanStreamReader.streamLoans(customerId);
+    }
+
+    @GetMapping("/page")
+    @PreAuthorize("hasRole('ADMIN') or @loanService.isCustomerOwner(authentication.name, #customerId)")
+    public ResponseEntity<KeysetPage<Loan>> pageLoans(@RequestParam Long customerId,
+                                                      @RequestParam(required = false) Boolean paid,
+                                                      @RequestParam(required = false) Long after,
+                                                      @RequestParam(defaultValue = "50") int size) {
+        return ResponseEntity.ok(loanListingService.loanPage(customerId, paid, after, size));
+    }
+
+    @GetMapping("/summary")
+    @PreAuthorize("hasRole('ADMIN') or @loanService.isCustomerOwner(authentication.name, #customerId)")
+    public ResponseEntity<List<LoanSummary>> summarizeLoans(@RequestParam Long customerId,
+                                                            @RequestParam(required = false) Boolean paid) {
+        return ResponseEntity.ok(loanListingService.summaries(customerId, paid));
+    }
+
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_JSON_VALUE)
+    @PreAuthorize("hasRole('ADMIN') or @loanService.isCustomerOwner(authentication.name, #customerId)")
+    public ResponseEntity<StreamingResponseBody> exportLoans(@RequestParam Long customerId,
+                                                             @RequestParam(required = false) Boolean paid) {
+        StreamingResponseBody body = output -> loanListingService.exportLoans(customerId, paid, output);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
     @GetMapping("/{loanId}/installments")
     @PreAuthorize("hasRole('ADMIN') or @loanService.isLoanOwner(authentication.name, #loanId)")
     public ResponseEntity<List<LoanInstallment>> listInstallments(@PathVariable Long loanId) {
         List<LoanInstallment> installments = loanService.listInstallments(loanId);
         return ResponseEntity.ok(installments);
     }
+
+    @GetMapping(value = "/{loanId}/installments/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @PreAuthorize("hasRole('ADMIN') or @loanService.isLoanOwner(authentication.name, #loanId)")
+    public Flux<LoanInstallment> streamInstallments(@PathVariable Long loanId) {
+        return loanStreamReader.streamInstallments(loanId);
+    }
+
+    @GetMapping("/{loanId}/installments/page")
+    @PreAuthorize("hasRole('ADMIN') or @loanService.isLoanOwner(authentication.name, #loanId)")
+    public ResponseEntity<KeysetPage<LoanInstallment>> pageInstallments(
+            @PathVariable Long loanId,
+            @RequestParam(required = false) Boolean paid,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dueFrom,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dueTo,
+            @RequestParam(required = false) Long after,
+            @RequestParam(defaultValue = "50") int size) {
+        return ResponseEntity.ok(loanListingService.installmentPage(loanId, paid, dueFrom, dueTo, after, size));
+    }
+
+    @GetMapping(value = "/{loanId}/installments/export", produces = MediaType.APPLICATION_JSON_VALUE)
+    @PreAuthorize("hasRole('ADMIN') or @loanService.isLoanOwner(authentication.name, #loanId)")
+    public ResponseEntity<StreamingResponseBody> exportInstallments(
+            @PathVariable Long loanId,
+            @RequestParam(required = false) Boolean paid,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dueFrom,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dueTo) {
+        StreamingResponseBody body = output -> loanListingService.exportInstallments(loanId, paid, dueFrom, dueTo, output);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
     @PostMapping("/pay")
     @PreAuthorize("hasRole('ADMIN') or @loanService.isLoanOwner(authentication.name, #loanId)")
     public ResponseEntity<String> payLoan(@RequestParam Long loanId,
-                                          @RequestParam BigDecimal paymentAmount) {
-        String result = loanService.payLoan(loanId, paymentAmount);
+                                          @RequestParam BigDecimal paymentAmount,
+                                          @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        String result = idempotencyKey == null
+                ? loanService.payLoan(loanId, paymentAmount)
+                : idempotentPaymentService.payLoan(idempotencyKey, loanId, paymentAmount);
         return ResponseEntity.ok(result);
     }
+
+    @GetMapping("/pay/simulate")
+    @PreAuthorize("hasRole('ADMIN') or @loanService.isLoanOwner(authentication.name, #loanId)")
+    public ResponseEntity<PaymentSimulation> simulatePayment(@RequestParam Long loanId,
+                                                             @RequestParam BigDecimal paymentAmount) {
+        return ResponseEntity.ok(loanService.simulatePayment(loanId, paymentAmount));
+    }
+
+    @PostMapping("/pay-customer")
+    @PreAuthorize("hasRole('ADMIN') or @loanService.isCustomerOwner(authentication.name, #customerId)")
+    public ResponseEntity<CustomerPayment> payCustomer(@RequestParam Long customerId,
+                                                       @RequestParam BigDecimal paymentAmount,
+                                                       @RequestParam(defaultValue = "OLDEST_DUE_FIRST") CustomerPayment.Policy policy) {
+        return ResponseEntity.ok(loanService.payCustomer(customerId, paymentAmount, policy));
+    }
+
+    @PostMapping(value = "/pay/batch", consumes = TEXT_CSV)
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<PaymentBatchReport> payBatch(InputStream body) throws IOException {
+        return ResponseEntity.ok(paymentBatchService.processCsv(body));
+    }
 }
\ No newline at end of file
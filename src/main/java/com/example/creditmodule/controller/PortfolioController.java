@@ -0,0 +1,32 @@
+package com.example.creditmodule.controller;
+
+import com.example.creditmodule.analytics.PortfolioAnalytics;
+import com.example.creditmodule.module.PortfolioRisk;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.LocalDate;
+
+@RestController
+@RequestMapping("/api/portfolio")
+public class PortfolioController {
+
+    private final PortfolioAnalytics portfolioAnalytics;
+
+    public PortfolioController(PortfolioAnalytics portfolioAnalytics) {
+        this.portfolioAnalytics = portfolioAnalytics;
+    }
+
+    // Served from memory; asOf only moves the aging buckets
+    @GetMapping("/risk")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<PortfolioRisk> risk(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate asOf) {
+        return ResponseEntity.ok(portfolioAnalytics.risk(asOf != null ? asOf : LocalDate.now()));
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.creditmodule.journal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+
+/**
+ * Releases a file mapping right away instead of when its buffer is garbage collected. The JDK has no
+ * public API for this before the foreign memory API, so it goes through {@code sun.misc.Unsafe.invokeCleaner}
+ * in the {@code jdk.unsupported} module; where that is unavailable, mappings are left to the collector.
+ * <p>
+ * The buffer must not be touched afterwards, by any thread: an access to an unmapped buffer crashes the JVM.
+ */
+final class MappedBuffers {
+
+    private static final Logger log = LoggerFactory.getLogger(MappedBuffers.class);
+    private static final MethodHandle INVOKE_CLEANER = lookupCleaner();
+
+    private MappedBuffers() {
+    }
+
+    static void unmap(MappedByteBuffer buffer) {
+        if (INVOKE_CLEANER == null) {
+            return;
+        }
+        try {
+            INVOKE_CLEANER.invokeExact((ByteBuffer) buffer);
+        } catch (Throwable e) {
+            log.warn("Could not unmap a journal segment, leaving it to the garbage collector", e);
+        }
+    }
+
+    private static MethodHandle lookupCleaner() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            return MethodHandles.lookup()
+                    .findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+                    .bindTo(theUnsafe.get(null));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.info("Journal segments will be unmapped by the garbage collector: {}", e.toString());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.creditmodule.journal;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * A journal entry. A payment carries the state it leaves behind (installments paid, remaining count,
+ * principal released) rather than the request, so replaying it never recomputes discounts or
+ * penalties against a later date. An abort cancels a payment whose transaction rolled back after it
+ * had been journaled.
+ */
+public record PaymentEvent(Type type,
+                           Long abortedSequence,
+                           Long loanId,
+                           Long customerId,
+                           LocalDate paymentDate,
+                           List<PaidInstallment> installments,
+                           int remainingInstallments,
+                           boolean loanPaid,
+                           BigDecimal principalReleased) {
+
+    public enum Type {
+        PAYMENT,
+        ABORT
+    }
+
+    public record PaidInstallment(Long installmentId, BigDecimal paidAmount) {
+    }
+
+    public static PaymentEvent payment(Long loanId, Long customerId, LocalDate paymentDate,
+                                       List<PaidInstallment> installments, int remainingInstallments,
+                                       boolean loanPaid, BigDecimal principalReleased) {
+        return new PaymentEvent(Type.PAYMENT, null, loanId, customerId, paymentDate, installments,
+                remainingInstallments, loanPaid, principalReleased);
+    }
+
+    public static PaymentEvent abort(long sequence) {
+        return new PaymentEvent(Type.ABORT, sequence, null, null, null, List.of(), 0, false, null);
+    }
+}
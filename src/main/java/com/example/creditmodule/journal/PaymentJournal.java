@@ -0,0 +1,348 @@
+package com.example.creditmodule.journal;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of opaque records in fixed-size memory-mapped segment files.
+ * <p>
+ * Every record gets the next sequence number and is written as {@code [length][crc][sequence][payload]}
+ * at the end of the active segment; a zero length marks the end of the written part, and a record
+ * whose checksum does not match is treated as a torn write and ends the log. When a record does not
+ * fit, the segment is forced to disk and a new one named after its first sequence is started.
+ * <p>
+ * Appending only copies bytes into the mapping. Durability is requested separately with
+ * {@link #awaitDurable}: the first caller that finds its record not yet on disk forces the segment,
+ * and everyone who appended before that force started is released by the same call, so concurrent
+ * payments share one fsync instead of queueing for one each.
+ * <p>
+ * A segment's mapping is released as soon as the segment is done with, rather than whenever the
+ * garbage collector gets to the buffer, so a long-running process does not accumulate one mapping of
+ * {@code segment-size} bytes per segment it ever wrote or replayed. A rolled segment is only unmapped
+ * once no force is running on it.
+ * <p>
+ * Only created with {@code credit.journal.enabled}; see {@code PaymentLedger}.
+ */
+@Component
+@ConditionalOnProperty(name = "credit.journal.enabled", havingValue = "true")
+public class PaymentJournal {
+
+    private static final int HEADER_BYTES = Integer.BYTES + Integer.BYTES + Long.BYTES;
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final String journalId;
+    private final FileChannel lockChannel;
+    private final FileLock lock;
+
+    private Segment active;
+    private long lastSequence;
+
+    private final Object syncLock = new Object();
+    private long durableSequence;
+    private boolean forcing;
+    // Rolled segments that a running force may still hold; guarded by syncLock
+    private final List<Segment> retired = new ArrayList<>();
+
+    public PaymentJournal(@Value("${credit.journal.dir:./data/journal}") Path directory,
+                          @Value("${credit.journal.segment-size:67108864}") int segmentSize) {
+        if (segmentSize < 4096) {
+            throw new IllegalArgumentException("Journal segment size must be at least 4096 bytes");
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        try {
+            Files.createDirectories(directory);
+            lockChannel = FileChannel.open(directory.resolve("journal.lock"),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            lock = tryLock(lockChannel);
+            if (lock == null) {
+                lockChannel.close();
+                throw new IllegalStateException("Payment journal " + directory + " is in use by another process");
+            }
+            journalId = readOrCreateId();
+            recover();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        durableSequence = lastSequence;
+    }
+
+    /**
+     * Identifies this journal across restarts, so that a database can tell its own journal from another.
+     */
+    public String journalId() {
+        return journalId;
+    }
+
+    public synchronized long lastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * Writes a record to the mapping and returns its sequence. The record is not durable until
+     * {@link #awaitDurable} has returned for it.
+     */
+    public synchronized long append(byte[] payload) {
+        int recordBytes = HEADER_BYTES + payload.length;
+        if (recordBytes + Integer.BYTES > segmentSize) {
+            throw new IllegalArgumentException("Journal record of " + payload.length + " bytes does not fit in a segment");
+        }
+        long sequence = lastSequence + 1;
+        if (active == null || active.buffer.remaining() < recordBytes + Integer.BYTES) {
+            roll(sequence);
+        }
+        MappedByteBuffer buffer = active.buffer;
+        int start = buffer.position();
+        buffer.position(start + Integer.BYTES + Integer.BYTES);
+        buffer.putLong(sequence);
+        buffer.put(payload);
+        buffer.putInt(start + Integer.BYTES, checksum(sequence, payload));
+        // Length last: a reader never sees a record whose body is still being copied
+        buffer.putInt(start, payload.length);
+        lastSequence = sequence;
+        return sequence;
+    }
+
+    /**
+     * Blocks until the record with {@code sequence} is on disk, forcing the active segment at most once
+     * for every group of callers that arrive while a force is running.
+     */
+    public void awaitDurable(long sequence) {
+        synchronized (syncLock) {
+            while (durableSequence < sequence) {
+                if (!forcing) {
+                    forcing = true;
+                    break;
+                }
+                try {
+                    syncLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for the payment journal", e);
+                }
+            }
+            if (durableSequence >= sequence) {
+                return;
+            }
+        }
+        long target;
+        MappedByteBuffer buffer;
+        synchronized (this) {
+            target = lastSequence;
+            buffer = active.buffer;
+        }
+        boolean forced = false;
+        try {
+            buffer.force();
+            forced = true;
+        } finally {
+            synchronized (syncLock) {
+                forcing = false;
+                if (forced) {
+                    durableSequence = Math.max(durableSequence, target);
+                }
+                unmapRetired();
+                syncLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Passes every intact record after {@code afterSequence} to {@code consumer}, oldest first. Meant for
+     * startup, before any appends.
+     */
+    public void replay(long afterSequence, Consumer<JournalRecord> consumer) {
+        List<Path> segments = segments();
+        for (int i = 0; i < segments.size(); i++) {
+            if (i + 1 < segments.size() && firstSequenceOf(segments.get(i + 1)) <= afterSequence + 1) {
+                continue;
+            }
+            read(segments.get(i), record -> {
+                if (record.sequence() > afterSequence) {
+                    consumer.accept(record);
+                }
+            });
+        }
+    }
+
+    @PreDestroy
+    synchronized void close() throws IOException {
+        if (active != null) {
+            active.buffer.force();
+            active.channel.close();
+            synchronized (syncLock) {
+                retired.add(active);
+                if (!forcing) {
+                    unmapRetired();
+                }
+            }
+            active = null;
+        }
+        lock.release();
+        lockChannel.close();
+    }
+
+    private void recover() throws IOException {
+        List<Path> segments = segments();
+        if (segments.isEmpty()) {
+            return;
+        }
+        for (Path segment : segments) {
+            read(segment, record -> lastSequence = record.sequence());
+        }
+        Path last = segments.get(segments.size() - 1);
+        if (firstSequenceOf(last) > lastSequence + 1) {
+            // Empty segment left by a crash right after a roll
+            lastSequence = firstSequenceOf(last) - 1;
+        }
+        active = open(last);
+        int[] end = {0};
+        readRecords(active.buffer.duplicate(), record -> end[0] = record.endPosition());
+        active.buffer.position(end[0]);
+        // Wipe a torn record so that the next append is not mistaken for its continuation
+        if (end[0] + Integer.BYTES <= segmentSize) {
+            active.buffer.putInt(end[0], 0);
+        }
+    }
+
+    private void roll(long firstSequence) {
+        try {
+            if (active != null) {
+                active.buffer.force();
+                active.channel.close();
+                retire(active, firstSequence - 1);
+            }
+            active = open(directory.resolve(String.format("%020d", firstSequence) + SEGMENT_SUFFIX));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Everything in a rolled segment was just forced, so waiters up to its last record can go
+    private void retire(Segment segment, long lastSequenceInSegment) {
+        synchronized (syncLock) {
+            durableSequence = Math.max(durableSequence, lastSequenceInSegment);
+            retired.add(segment);
+            if (!forcing) {
+                unmapRetired();
+            }
+            syncLock.notifyAll();
+        }
+    }
+
+    private void unmapRetired() {
+        for (Segment segment : retired) {
+            MappedBuffers.unmap(segment.buffer);
+        }
+        retired.clear();
+    }
+
+    private Segment open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new Segment(channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize));
+    }
+
+    private void read(Path segment, Consumer<JournalRecord> consumer) {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(channel.size(), segmentSize));
+            try {
+                readRecords(buffer, consumer);
+            } finally {
+                MappedBuffers.unmap(buffer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void readRecords(ByteBuffer buffer, Consumer<JournalRecord> consumer) {
+        while (buffer.remaining() >= HEADER_BYTES) {
+            int start = buffer.position();
+            int length = buffer.getInt();
+            int crc = buffer.getInt();
+            long sequence = buffer.getLong();
+            if (length <= 0 || length > buffer.remaining()) {
+                return;
+            }
+            byte[] payload = new byte[length];
+            buffer.get(payload);
+            if (checksum(sequence, payload) != crc) {
+                buffer.position(start);
+                return;
+            }
+            consumer.accept(new JournalRecord(sequence, payload, buffer.position()));
+        }
+    }
+
+    private List<Path> segments() {
+        try (Stream<Path> files = Files.list(directory)) {
+            return new ArrayList<>(files.filter(path -> path.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted()
+                    .toList());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static FileLock tryLock(FileChannel channel) throws IOException {
+        try {
+            return channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            return null;
+        }
+    }
+
+    private String readOrCreateId() throws IOException {
+        Path idFile = directory.resolve("journal.id");
+        if (Files.exists(idFile)) {
+            return Files.readString(idFile, StandardCharsets.UTF_8).trim();
+        }
+        String id = UUID.randomUUID().toString();
+        Files.writeString(idFile, id, StandardCharsets.UTF_8);
+        return id;
+    }
+
+    private static long firstSequenceOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static int checksum(long sequence, byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(ByteBuffer.allocate(Long.BYTES).putLong(0, sequence));
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    private record Segment(FileChannel channel, MappedByteBuffer buffer) {
+    }
+
+    /**
+     * One record read back from the journal; {@code endPosition} is its end offset within the segment.
+     */
+    public record JournalRecord(long sequence, byte[] payload, int endPosition) {
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.creditmodule.metrics;
+
+import org.hibernate.Interceptor;
+import org.hibernate.type.Type;
+
+/**
+ * Counts entities hydrated from result sets, per entity type, against the current request.
+ */
+public class EntityLoadCounter implements Interceptor {
+
+    @Override
+    public boolean onLoad(Object entity, Object id, Object[] state, String[] propertyNames, Type[] types) {
+        RequestSqlStats stats = RequestSqlStats.current();
+        if (stats != null) {
+            stats.entityLoaded(entity);
+        }
+        return false;
+    }
+}
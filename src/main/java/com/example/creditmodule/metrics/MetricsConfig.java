@@ -0,0 +1,36 @@
+package com.example.creditmodule.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import java.time.Duration;
+
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public HibernatePropertiesCustomizer sqlCountingCustomizer() {
+        return properties -> {
+            properties.put(AvailableSettings.STATEMENT_INSPECTOR, new SqlStatementCounter());
+            properties.put(AvailableSettings.INTERCEPTOR, new EntityLoadCounter());
+        };
+    }
+
+    // Ahead of the security filter chain, so credential and ownership lookups count toward the request
+    @Bean
+    public FilterRegistrationBean<SqlMetricsFilter> sqlMetricsFilter(
+            MeterRegistry meterRegistry,
+            @Value("${credit.metrics.slow-request-threshold:500ms}") Duration slowRequestThreshold) {
+        FilterRegistrationBean<SqlMetricsFilter> registration =
+                new FilterRegistrationBean<>(new SqlMetricsFilter(meterRegistry, slowRequestThreshold));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 10);
+        registration.addUrlPatterns("/api/*");
+        return registration;
+    }
+}
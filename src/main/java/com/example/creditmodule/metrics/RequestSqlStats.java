@@ -0,0 +1,91 @@
+package com.example.creditmodule.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * SQL statements and entity loads issued by the current request thread. Bound by
+ * {@link SqlMetricsFilter} for the duration of a request and fed by {@link SqlStatementCounter} and
+ * {@link EntityLoadCounter}; work handed off to other threads is not attributed to the request.
+ */
+public final class RequestSqlStats {
+
+    private static final ThreadLocal<RequestSqlStats> CURRENT = new ThreadLocal<>();
+
+    private int selects;
+    private int inserts;
+    private int updates;
+    private int deletes;
+    private int others;
+    private int entityLoads;
+    private final Map<String, Integer> statementCounts = new LinkedHashMap<>();
+    private final Map<String, Integer> entityLoadCounts = new LinkedHashMap<>();
+
+    private RequestSqlStats() {
+    }
+
+    static RequestSqlStats start() {
+        RequestSqlStats stats = new RequestSqlStats();
+        CURRENT.set(stats);
+        return stats;
+    }
+
+    static void stop() {
+        CURRENT.remove();
+    }
+
+    static RequestSqlStats current() {
+        return CURRENT.get();
+    }
+
+    void statement(String sql) {
+        String normalized = sql.stripLeading();
+        String verb = normalized.length() >= 6 ? normalized.substring(0, 6).toLowerCase() : normalized.toLowerCase();
+        switch (verb) {
+            case "select" -> selects++;
+            case "insert" -> inserts++;
+            case "update" -> updates++;
+            case "delete" -> deletes++;
+            default -> others++;
+        }
+        statementCounts.merge(normalized, 1, Integer::sum);
+    }
+
+    void entityLoaded(Object entity) {
+        entityLoads++;
+        entityLoadCounts.merge(entity.getClass().getSimpleName(), 1, Integer::sum);
+    }
+
+    public int statements() {
+        return selects + inserts + updates + deletes + others;
+    }
+
+    public int entityLoads() {
+        return entityLoads;
+    }
+
+    int selects() {
+        return selects;
+    }
+
+    int inserts() {
+        return inserts;
+    }
+
+    int updates() {
+        return updates;
+    }
+
+    int deletes() {
+        return deletes;
+    }
+
+    String breakdown() {
+        String statements = statementCounts.entrySet().stream()
+                .map(entry -> String.format("%n  %4dx %s", entry.getValue(), entry.getKey()))
+                .collect(Collectors.joining());
+        return String.format("%d statements (%d select, %d insert, %d update, %d delete, %d other), %d entities loaded %s%s",
+                statements(), selects, inserts, updates, deletes, others, entityLoads, entityLoadCounts, statements);
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.creditmodule.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Records how many SQL statements and entity loads each request caused, tagged by the matched
+ * endpoint pattern, and logs the full statement breakdown of requests slower than the configured
+ * threshold. A jump in {@code credit.http.sql.statements} for one endpoint is the signature of an
+ * N+1 regression.
+ */
+public class SqlMetricsFilter extends OncePerRequestFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(SqlMetricsFilter.class);
+
+    private final MeterRegistry meterRegistry;
+    private final long slowRequestThresholdNanos;
+
+    public SqlMetricsFilter(MeterRegistry meterRegistry, Duration slowRequestThreshold) {
+        this.meterRegistry = meterRegistry;
+        this.slowRequestThresholdNanos = slowRequestThreshold.toNanos();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        RequestSqlStats stats = RequestSqlStats.start();
+        long start = System.nanoTime();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            RequestSqlStats.stop();
+            record(request, response, stats, elapsed);
+        }
+    }
+
+    private void record(HttpServletRequest request, HttpServletResponse response, RequestSqlStats stats, long elapsedNanos) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String uri = pattern != null ? pattern.toString() : "UNMATCHED";
+        String method = request.getMethod();
+
+        DistributionSummary.builder("credit.http.sql.statements")
+                .description("SQL statements prepared per request")
+                .tag("uri", uri).tag("method", method)
+                .register(meterRegistry)
+                .record(stats.statements());
+        DistributionSummary.builder("credit.http.entities.loaded")
+                .description("Entities loaded per request")
+                .tag("uri", uri).tag("method", method)
+                .register(meterRegistry)
+                .record(stats.entityLoads());
+
+        if (elapsedNanos >= slowRequestThresholdNanos) {
+            log.warn("Slow request {} {} ({}) took {} ms, status {}: {}", method, request.getRequestURI(), uri,
+                    Duration.ofNanos(elapsedNanos).toMillis(), response.getStatus(), stats.breakdown());
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.creditmodule.metrics;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Counts every statement Hibernate prepares against the request that issued it. A JDBC batch is
+ * prepared once, so a batched insert of fifty rows counts as one statement.
+ */
+public class SqlStatementCounter implements StatementInspector {
+
+    @Override
+    public String inspect(String sql) {
+        RequestSqlStats stats = RequestSqlStats.current();
+        if (stats != null) {
+            stats.statement(sql);
+        }
+        return sql;
+    }
+}
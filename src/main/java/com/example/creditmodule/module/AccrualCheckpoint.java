@@ -0,0 +1,19 @@
+package com.example.creditmodule.module;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+@Data
+@Entity
+public class AccrualCheckpoint {
+    @Id
+    private LocalDate accrualDate;
+
+    private long lastInstallmentId;
+    private long processedInstallments;
+    private boolean completed;
+    private LocalDateTime updatedAt;
+}
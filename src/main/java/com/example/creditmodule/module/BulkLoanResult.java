@@ -0,0 +1,16 @@
+package com.example.creditmodule.module;
+
+public record BulkLoanResult(long row,
+                             Long customerId,
+                             boolean success,
+                             Long loanId,
+                             String message) {
+
+    public static BulkLoanResult created(long row, Long customerId, Long loanId) {
+        return new BulkLoanResult(row, customerId, true, loanId, "Loan created successfully");
+    }
+
+    public static BulkLoanResult failed(long row, Long customerId, String message) {
+        return new BulkLoanResult(row, customerId, false, null, message);
+    }
+}
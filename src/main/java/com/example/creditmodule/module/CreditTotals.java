@@ -0,0 +1,9 @@
+package com.example.creditmodule.module;
+
+import java.math.BigDecimal;
+
+/**
+ * Credit limits and their used part, summed over all customers.
+ */
+public record CreditTotals(long customers, BigDecimal creditLimit, BigDecimal usedCreditLimit) {
+}
@@ -0,0 +1,31 @@
+package com.example.creditmodule.module;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Outcome of one payment spread over a customer's open loans; {@code unallocated} is the part of the
+ * amount no installment could take.
+ */
+public record CustomerPayment(Long customerId,
+                              Policy policy,
+                              int paidInstallments,
+                              BigDecimal totalPaid,
+                              BigDecimal totalDiscount,
+                              BigDecimal totalPenalty,
+                              BigDecimal unallocated,
+                              List<LoanAllocation> loans) {
+
+    /**
+     * Order in which installments of different loans are offered the money.
+     */
+    public enum Policy {
+        // Every payable installment of every loan by due date
+        OLDEST_DUE_FIRST,
+        // Loan by loan, the one accruing the most late penalty today first
+        HIGHEST_PENALTY_FIRST
+    }
+
+    public record LoanAllocation(Long loanId, int paidInstallments, BigDecimal amountPaid, boolean loanPaid) {
+    }
+}
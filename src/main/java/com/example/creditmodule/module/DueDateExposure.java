@@ -0,0 +1,10 @@
+package com.example.creditmodule.module;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Unpaid installments falling due on one date, summed over all loans.
+ */
+public record DueDateExposure(LocalDate dueDate, long installments, BigDecimal amount) {
+}
@@ -0,0 +1,29 @@
+package com.example.creditmodule.module;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Data
+@Entity
+@Table(indexes = @Index(name = "idx_idempotency_created_at", columnList = "createdAt"))
+public class IdempotencyRecord {
+    // Decimal places kept of a payment amount; keyed payments with more are rejected so a replay compares exactly
+    public static final int AMOUNT_SCALE = 10;
+
+    // Idempotency-Key header scoped to the loan, as "loanId:key"
+    @Id
+    @Column(length = 150)
+    private String requestKey;
+
+    @Column(nullable = false)
+    private Long loanId;
+    @Column(nullable = false, precision = 38, scale = AMOUNT_SCALE)
+    private BigDecimal paymentAmount;
+    @Column(length = 1000)
+    private String response;
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+}
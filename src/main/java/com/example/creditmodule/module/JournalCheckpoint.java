@@ -0,0 +1,18 @@
+package com.example.creditmodule.module;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@Entity
+public class JournalCheckpoint {
+    @Id
+    @Column(length = 36)
+    private String journalId;
+
+    // Every journal record up to here is reflected in the loan, installment and customer tables
+    private long snapshotSequence;
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,10 @@
+package com.example.creditmodule.module;
+
+import java.util.List;
+
+/**
+ * One page of a listing ordered by id. Pass {@code nextCursor} back as {@code after} to get the next
+ * page; it is null on the last page.
+ */
+public record KeysetPage<T>(List<T> items, Long nextCursor) {
+}
@@ -1,21 +1,37 @@
 package com.example.creditmodule.module;
 
+import com.example.creditmodule.cache.SecondLevelCacheConfig;
 import jakarta.persistence.*;
 import lombok.Data;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 
 @Data
 @Entity
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = SecondLevelCacheConfig.LOAN_REGION)
+@Table(indexes = @Index(name = "idx_loan_customer_id", columnList = "customerId, id"))
 public class Loan {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "loan_seq")
+    @SequenceGenerator(name = "loan_seq", sequenceName = "loan_seq", allocationSize = 50)
     private Long id;
     @Column(nullable = false)
     private Long customerId;
     private BigDecimal loanAmount;
     private int numberOfInstallments;
+    // Defaulted so the column can be added to databases created before it existed; see DataLoader
+    @ColumnDefault("0")
+    private int remainingInstallments;
     private LocalDate createDate;
     private boolean isPaid;
+    // Sequence of the last payment journal record applied to this loan; see PaymentLedger
+    @ColumnDefault("0")
+    private long journalSequence;
+    @Version
+    @ColumnDefault("0")
+    private long version;
 }
\ No newline at end of file
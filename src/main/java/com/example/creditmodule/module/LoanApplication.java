@@ -0,0 +1,9 @@
+package com.example.creditmodule.module;
+
+import java.math.BigDecimal;
+
+public record LoanApplication(Long customerId,
+                              BigDecimal amount,
+                              BigDecimal interestRate,
+                              Integer installments) {
+}
@@ -1,16 +1,27 @@
 package com.example.creditmodule.module;
 
+import com.example.creditmodule.cache.SecondLevelCacheConfig;
 import jakarta.persistence.*;
 import lombok.Data;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 
 @Data
 @Entity
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = SecondLevelCacheConfig.INSTALLMENT_REGION)
+@Table(indexes = {
+        @Index(name = "idx_installment_loan_paid_due", columnList = "loanId, isPaid, dueDate"),
+        @Index(name = "idx_installment_loan_id", columnList = "loanId, id"),
+        @Index(name = "idx_installment_paid_id_due", columnList = "isPaid, id, dueDate")
+})
 public class LoanInstallment {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "loan_installment_seq")
+    @SequenceGenerator(name = "loan_installment_seq", sequenceName = "loan_installment_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false)
@@ -21,4 +32,14 @@ public class LoanInstallment {
     private LocalDate dueDate;
     private LocalDate paymentDate;
     private boolean isPaid;
+
+    // Late fee accrued so far by the nightly job; exact at 0.1% per day, hence five decimals
+    @Column(precision = 19, scale = 5)
+    private BigDecimal accruedPenalty;
+    private LocalDate penaltyAccruedOn;
+
+    // Payments on one loan are serialized in-process; this catches a second instance writing the same row
+    @Version
+    @ColumnDefault("0")
+    private long version;
 }
\ No newline at end of file
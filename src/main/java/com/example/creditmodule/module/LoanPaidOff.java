@@ -0,0 +1,9 @@
+package com.example.creditmodule.module;
+
+/**
+ * Published by the payment outbox once the last installment of a loan has been paid. Listeners are
+ * notification hooks: they run in the dispatch transaction and may see the same loan again if that
+ * transaction rolls back and is retried.
+ */
+public record LoanPaidOff(Long loanId, Long customerId) {
+}
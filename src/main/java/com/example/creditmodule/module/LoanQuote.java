@@ -0,0 +1,11 @@
+package com.example.creditmodule.module;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+public record LoanQuote(BigDecimal amount,
+                        BigDecimal interestRate,
+                        BigDecimal totalAmount,
+                        int numberOfInstallments,
+                        List<ScheduledInstallment> schedule) {
+}
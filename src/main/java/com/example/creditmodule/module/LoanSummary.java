@@ -0,0 +1,19 @@
+package com.example.creditmodule.module;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Dashboard view of one loan, aggregated over its installments in the database. Outstanding amount
+ * and accrued penalty cover unpaid installments only; nextDueDate is null once the loan is paid off.
+ */
+public record LoanSummary(Long loanId,
+                          BigDecimal loanAmount,
+                          int numberOfInstallments,
+                          boolean isPaid,
+                          long paidInstallments,
+                          BigDecimal outstandingAmount,
+                          BigDecimal accruedPenalty,
+                          LocalDate nextDueDate,
+                          boolean overdue) {
+}
@@ -0,0 +1,31 @@
+package com.example.creditmodule.module;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Data
+@Entity
+public class OutboxEvent {
+    // Identity rather than a pooled sequence: one row per payment, and no sequence round trip on the pay path
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 32)
+    private Type type;
+    @Column(nullable = false)
+    private Long customerId;
+    @Column(nullable = false)
+    private Long loanId;
+    private BigDecimal amount;
+    private LocalDateTime createdAt;
+
+    public enum Type {
+        CREDIT_RELEASED,
+        LOAN_PAID_OFF
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.creditmodule.module;
+
+import java.util.List;
+
+public record PaymentBatchReport(int totalRows,
+                                 int succeeded,
+                                 int failed,
+                                 int customers,
+                                 long elapsedMillis,
+                                 double paymentsPerSecond,
+                                 List<RowResult> results) {
+
+    public record RowResult(int row, Long loanId, boolean success, String message) {
+    }
+}
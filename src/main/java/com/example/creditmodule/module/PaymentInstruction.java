@@ -0,0 +1,6 @@
+package com.example.creditmodule.module;
+
+import java.math.BigDecimal;
+
+public record PaymentInstruction(Long loanId, BigDecimal amount) {
+}
@@ -0,0 +1,17 @@
+package com.example.creditmodule.module;
+
+import java.math.BigDecimal;
+
+/**
+ * What paying {@code paymentAmount} on a loan today would do, computed without writing anything.
+ */
+public record PaymentSimulation(Long loanId,
+                                BigDecimal paymentAmount,
+                                int paidInstallments,
+                                BigDecimal totalPaid,
+                                BigDecimal totalDiscount,
+                                BigDecimal totalPenalty,
+                                BigDecimal unallocated,
+                                BigDecimal nextInstallmentAmount,
+                                boolean loanFullyPaid) {
+}
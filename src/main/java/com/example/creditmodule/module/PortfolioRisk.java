@@ -0,0 +1,29 @@
+package com.example.creditmodule.module;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Risk figures of the whole book as of {@code asOf}. Outstanding exposure is the principal of every
+ * unpaid installment; overdue installments are aged by the days since their due date. Figures are
+ * maintained in memory and were last checked against the database at {@code reconciledAt}.
+ */
+public record PortfolioRisk(LocalDate asOf,
+                            BigDecimal outstandingExposure,
+                            long openInstallments,
+                            long customers,
+                            BigDecimal totalCreditLimit,
+                            BigDecimal usedCreditLimit,
+                            BigDecimal utilization,
+                            List<AgingBucket> overdue,
+                            LocalDateTime reconciledAt) {
+
+    /**
+     * Unpaid installments overdue by {@code minDays} to {@code maxDays} days; {@code maxDays} is null
+     * for the open-ended last bucket.
+     */
+    public record AgingBucket(String range, int minDays, Integer maxDays, long installments, BigDecimal amount) {
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.creditmodule.module;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+public record ScheduledInstallment(int number, LocalDate dueDate, BigDecimal amount) {
+}
@@ -1,10 +1,14 @@
 package com.example.creditmodule.module;
 
+import com.example.creditmodule.service.UserCacheInvalidator;
 import jakarta.persistence.*;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
 
 @Data
 @Entity
+@EntityListeners(UserCacheInvalidator.class)
 @Table(name = "APP_USER")
 public class User {
 
@@ -23,4 +27,10 @@ public class User {
     @JoinColumn(name = "customer_id")
     private Customer customer; // CUSTOMER rolü için ilişki
 
+    // Username as last read from or written to the database, so a rename can evict the old one
+    @Transient
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private String storedUsername;
+
 }
\ No newline at end of file
@@ -0,0 +1,9 @@
+package com.example.creditmodule.repository;
+
+import com.example.creditmodule.module.AccrualCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.time.LocalDate;
+
+public interface AccrualCheckpointRepository extends JpaRepository<AccrualCheckpoint, LocalDate> {
+}
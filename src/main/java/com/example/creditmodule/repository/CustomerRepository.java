@@ -1,7 +1,26 @@
 package com.example.creditmodule.repository;
 
+import com.example.creditmodule.module.CreditTotals;
 import com.example.creditmodule.module.Customer;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.math.BigDecimal;
 
 public interface CustomerRepository extends JpaRepository<Customer, Long> {
+
+    @Modifying
+    @Query("update Customer c set c.usedCreditLimit = c.usedCreditLimit + :amount " +
+            "where c.id = :customerId and c.creditLimit - c.usedCreditLimit >= :amount")
+    int reserveCredit(@Param("customerId") Long customerId, @Param("amount") BigDecimal amount);
+
+    @Modifying
+    @Query("update Customer c set c.usedCreditLimit = c.usedCreditLimit - :amount where c.id = :customerId")
+    int releaseCredit(@Param("customerId") Long customerId, @Param("amount") BigDecimal amount);
+
+    @Query("select new com.example.creditmodule.module.CreditTotals(count(c), " +
+            "coalesce(sum(c.creditLimit), 0), coalesce(sum(c.usedCreditLimit), 0)) from Customer c")
+    CreditTotals sumCredit();
 }
@@ -0,0 +1,7 @@
+package com.example.creditmodule.repository;
+
+import com.example.creditmodule.module.JournalCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface JournalCheckpointRepository extends JpaRepository<JournalCheckpoint, String> {
+}
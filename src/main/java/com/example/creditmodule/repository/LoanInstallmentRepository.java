@@ -1,10 +1,63 @@
 package com.example.creditmodule.repository;
 
+import com.example.creditmodule.module.DueDateExposure;
 import com.example.creditmodule.module.LoanInstallment;
+import com.example.creditmodule.module.OverdueInstallment;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface LoanInstallmentRepository extends JpaRepository<LoanInstallment, Long> {
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     List<LoanInstallment> findByLoanId(Long loanId);
+
+    @Query("select i from LoanInstallment i " +
+            "where i.loanId = :loanId and i.isPaid = false and i.dueDate < :maxDueDate " +
+            "order by i.dueDate")
+    List<LoanInstallment> findPayableInstallments(@Param("loanId") Long loanId, @Param("maxDueDate") LocalDate maxDueDate);
+
+    @Query("select i from LoanInstallment i " +
+            "where i.loanId in :loanIds and i.isPaid = false and i.dueDate < :maxDueDate " +
+            "order by i.dueDate, i.loanId, i.id")
+    List<LoanInstallment> findPayableInstallmentsOfLoans(@Param("loanIds") Collection<Long> loanIds,
+                                                         @Param("maxDueDate") LocalDate maxDueDate);
+
+    // Walks idx_installment_paid_id_due from afterId in id order, checking the due date in the index,
+    // and stops once the limit is reached
+    @Query("select new com.example.creditmodule.module.OverdueInstallment(i.id, i.amount, i.dueDate) " +
+            "from LoanInstallment i " +
+            "where i.isPaid = false and i.dueDate < :asOf and i.id > :afterId " +
+            "order by i.id")
+    List<OverdueInstallment> findOverdueAfter(@Param("afterId") long afterId, @Param("asOf") LocalDate asOf, Limit limit);
+
+    // Ids of one loan's installments are allocated in due-date order, so id order is schedule order
+    @Query("select i from LoanInstallment i " +
+            "where i.loanId = :loanId and i.id > :afterId and (:paid is null or i.isPaid = :paid) " +
+            "and (:dueFrom is null or i.dueDate >= :dueFrom) and (:dueTo is null or i.dueDate <= :dueTo) " +
+            "order by i.id")
+    List<LoanInstallment> findPage(@Param("loanId") Long loanId, @Param("paid") Boolean paid,
+                                   @Param("dueFrom") LocalDate dueFrom, @Param("dueTo") LocalDate dueTo,
+                                   @Param("afterId") long afterId, Limit limit);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("select i from LoanInstallment i " +
+            "where i.loanId = :loanId and (:paid is null or i.isPaid = :paid) " +
+            "and (:dueFrom is null or i.dueDate >= :dueFrom) and (:dueTo is null or i.dueDate <= :dueTo) " +
+            "order by i.id")
+    Stream<LoanInstallment> streamByLoanId(@Param("loanId") Long loanId, @Param("paid") Boolean paid,
+                                           @Param("dueFrom") LocalDate dueFrom, @Param("dueTo") LocalDate dueTo);
+
+    // A scan of every unpaid installment; only the periodic analytics reconciliation runs it
+    @Query("select new com.example.creditmodule.module.DueDateExposure(i.dueDate, count(i), sum(i.amount)) " +
+            "from LoanInstallment i where i.isPaid = false group by i.dueDate")
+    List<DueDateExposure> sumUnpaidByDueDate();
 }
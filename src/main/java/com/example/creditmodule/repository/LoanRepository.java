@@ -1,10 +1,75 @@
 package com.example.creditmodule.repository;
 
 import com.example.creditmodule.module.Loan;
+import com.example.creditmodule.module.LoanSummary;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface LoanRepository extends JpaRepository<Loan, Long> {
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     List<Loan> findByCustomerId(Long customerId);
+
+    List<LoanOwnerView> findByIdIn(Collection<Long> ids);
+
+    @Query("select l from Loan l " +
+            "where l.customerId = :customerId and l.id > :afterId and (:paid is null or l.isPaid = :paid) " +
+            "order by l.id")
+    List<Loan> findPage(@Param("customerId") Long customerId, @Param("paid") Boolean paid,
+                        @Param("afterId") long afterId, Limit limit);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("select l from Loan l " +
+            "where l.customerId = :customerId and (:paid is null or l.isPaid = :paid) " +
+            "order by l.id")
+    Stream<Loan> streamByCustomerId(@Param("customerId") Long customerId, @Param("paid") Boolean paid);
+
+    // One grouped query per customer instead of loading every installment of every loan
+    @Query("select new com.example.creditmodule.module.LoanSummary(l.id, l.loanAmount, l.numberOfInstallments, l.isPaid, " +
+            "sum(case when i.isPaid = true then 1 else 0 end), " +
+            "coalesce(sum(case when i.isPaid = false then i.amount end), 0), " +
+            "coalesce(sum(case when i.isPaid = false then i.accruedPenalty end), 0), " +
+            "min(case when i.isPaid = false then i.dueDate end), " +
+            "case when min(case when i.isPaid = false then i.dueDate end) < :today then true else false end) " +
+            "from Loan l left join LoanInstallment i on i.loanId = l.id " +
+            "where l.customerId = :customerId and (:paid is null or l.isPaid = :paid) " +
+            "group by l.id, l.loanAmount, l.numberOfInstallments, l.isPaid " +
+            "order by l.id")
+    List<LoanSummary> summarizeByCustomerId(@Param("customerId") Long customerId, @Param("paid") Boolean paid,
+                                            @Param("today") LocalDate today);
+
+    @Query("select l.id from Loan l where l.customerId = :customerId and l.isPaid = false order by l.id")
+    List<Long> findOpenLoanIds(@Param("customerId") Long customerId);
+
+    @Query("select l from Loan l where l.customerId = :customerId and l.isPaid = false order by l.id")
+    List<Loan> findOpenLoans(@Param("customerId") Long customerId);
+
+    @Query("select l.customerId from Loan l where l.id = :loanId")
+    Optional<Long> findCustomerIdById(@Param("loanId") Long loanId);
+
+    // Loans written before remaining_installments existed come up with 0 while still unpaid
+    @Transactional
+    @Modifying
+    @Query("update Loan l set l.remainingInstallments = "
+            + "(select count(i) from LoanInstallment i where i.loanId = l.id and i.isPaid = false) "
+            + "where l.isPaid = false and l.remainingInstallments = 0")
+    int backfillRemainingInstallments();
+
+    interface LoanOwnerView {
+        Long getId();
+
+        Long getCustomerId();
+    }
 }
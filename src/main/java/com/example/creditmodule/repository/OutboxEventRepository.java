@@ -0,0 +1,11 @@
+package com.example.creditmodule.repository;
+
+import com.example.creditmodule.module.OutboxEvent;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+    List<OutboxEvent> findByOrderById(Limit limit);
+}
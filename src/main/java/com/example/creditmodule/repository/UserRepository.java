@@ -2,9 +2,14 @@ package com.example.creditmodule.repository;
 
 import com.example.creditmodule.module.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.Optional;
 
 public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByUsername(String username);
+
+    @Query("select c.id from User u join u.customer c where u.username = :username")
+    Optional<Long> findCustomerIdByUsername(@Param("username") String username);
 }
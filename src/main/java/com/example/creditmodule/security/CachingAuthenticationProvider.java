@@ -0,0 +1,100 @@
+package com.example.creditmodule.security;
+
+import com.example.creditmodule.cache.BoundedCache;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * Remembers credentials that the delegate provider (a {@code DaoAuthenticationProvider} backed by
+ * BCrypt) has already verified, so HTTP Basic clients pay for one database lookup and one BCrypt
+ * check per time-to-live window instead of one per request.
+ *
+ * <p>Only an HMAC of the password is kept, under a key generated at startup and never stored, so a
+ * heap dump does not reveal passwords. A presented password whose HMAC differs from the cached one
+ * falls through to the delegate, which means a wrong password is always checked against BCrypt and
+ * a changed password takes effect as soon as {@link #evict(String)} runs or the entry expires.
+ */
+public class CachingAuthenticationProvider implements AuthenticationProvider {
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    private final AuthenticationProvider delegate;
+    private final BoundedCache<String, VerifiedCredential> verified;
+    private final SecretKeySpec key;
+
+    public CachingAuthenticationProvider(AuthenticationProvider delegate, int maximumSize, Duration timeToLive) {
+        this(delegate, maximumSize, timeToLive, System::nanoTime);
+    }
+
+    CachingAuthenticationProvider(AuthenticationProvider delegate, int maximumSize, Duration timeToLive,
+                                  LongSupplier ticker) {
+        this.delegate = delegate;
+        this.verified = new BoundedCache<>(maximumSize, timeToLive, ticker);
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        this.key = new SecretKeySpec(secret, HMAC_ALGORITHM);
+    }
+
+    @Override
+    public Authentication authenticate(Authentication authentication) throws AuthenticationException {
+        String username = authentication.getName();
+        Object credentials = authentication.getCredentials();
+        if (username == null || credentials == null) {
+            return delegate.authenticate(authentication);
+        }
+        byte[] digest = digest(username, credentials.toString());
+
+        VerifiedCredential cached = verified.get(username);
+        if (cached != null && MessageDigest.isEqual(cached.digest(), digest)) {
+            return cached.authentication();
+        }
+
+        Authentication result = delegate.authenticate(authentication);
+        if (result != null && result.isAuthenticated()) {
+            UsernamePasswordAuthenticationToken token = UsernamePasswordAuthenticationToken.authenticated(
+                    result.getPrincipal(), null, result.getAuthorities());
+            token.setDetails(result.getDetails());
+            verified.put(username, new VerifiedCredential(digest, token));
+        }
+        return result;
+    }
+
+    @Override
+    public boolean supports(Class<?> authentication) {
+        return delegate.supports(authentication);
+    }
+
+    public void evict(String username) {
+        verified.invalidate(username);
+    }
+
+    BoundedCache<String, VerifiedCredential> cache() {
+        return verified;
+    }
+
+    private byte[] digest(String username, String password) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(key);
+            mac.update(username.getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) 0);
+            return mac.doFinal(password.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 is not available", e);
+        }
+    }
+
+    record VerifiedCredential(byte[] digest, Authentication authentication) {
+    }
+}
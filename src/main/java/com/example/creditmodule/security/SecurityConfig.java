@@ -1,14 +1,19 @@
 package com.example.creditmodule.security;
 
+import com.example.creditmodule.service.CustomUserDetailsService;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
 
+import java.time.Duration;
+
 import static org.springframework.security.config.Customizer.withDefaults;
 
 @Configuration
@@ -21,13 +26,27 @@ public class SecurityConfig {
                 .csrf(csrf -> csrf.disable())
                 .authorizeHttpRequests(authorize -> authorize
                         .requestMatchers(new AntPathRequestMatcher("/api/loans/**")).authenticated()
+                        .requestMatchers(new AntPathRequestMatcher("/api/portfolio/**")).hasRole("ADMIN")
                         .requestMatchers(new AntPathRequestMatcher("/h2-console/**")).permitAll()
+                        .requestMatchers(new AntPathRequestMatcher("/actuator/health")).permitAll()
+                        .requestMatchers(new AntPathRequestMatcher("/actuator/**")).hasRole("ADMIN")
                         .anyRequest().permitAll()
                 )
                 .httpBasic(withDefaults());
         return http.build();
     }
 
+    @Bean
+    public CachingAuthenticationProvider authenticationProvider(
+            CustomUserDetailsService userDetailsService,
+            PasswordEncoder passwordEncoder,
+            @Value("${credit.security.credential-cache-size:10000}") int cacheSize,
+            @Value("${credit.security.credential-cache-ttl:5m}") Duration cacheTtl) {
+        DaoAuthenticationProvider daoProvider = new DaoAuthenticationProvider(passwordEncoder);
+        daoProvider.setUserDetailsService(userDetailsService::loadUserByUsername);
+        return new CachingAuthenticationProvider(daoProvider, cacheSize, cacheTtl);
+    }
+
     @Bean
     public PasswordEncoder passwordEncoder() {
         return new BCryptPasswordEncoder();
@@ -0,0 +1,156 @@
+package com.example.creditmodule.service;
+
+import com.example.creditmodule.module.BulkLoanResult;
+import com.example.creditmodule.module.Loan;
+import com.example.creditmodule.module.LoanApplication;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streams loan applications from an NDJSON or CSV body and originates them in chunks. Only one chunk
+ * of rows and results is held in memory at a time. Each chunk is originated in one transaction: every
+ * row is validated and its credit reserved, then the accepted loans are inserted, so reservations and
+ * loans commit or roll back together. The chunk's results are written to the output before the next
+ * chunk is read.
+ */
+@Service
+public class BulkLoanService {
+
+    public enum Format { NDJSON, CSV }
+
+    private final LoanService loanService;
+    private final TransactionTemplate transactionTemplate;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+    private final int chunkSize;
+
+    public BulkLoanService(LoanService loanService,
+                           TransactionTemplate transactionTemplate,
+                           EntityManager entityManager,
+                           ObjectMapper objectMapper,
+                           @Value("${credit.bulk.chunk-size:500}") int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be positive");
+        }
+        this.loanService = loanService;
+        this.transactionTemplate = transactionTemplate;
+        this.entityManager = entityManager;
+        this.objectMapper = objectMapper;
+        this.chunkSize = chunkSize;
+    }
+
+    public void originate(InputStream input, Format format, OutputStream output) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        List<Row> chunk = new ArrayList<>(chunkSize);
+        long rowNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank() || (format == Format.CSV && rowNumber == 0 && chunk.isEmpty() && isCsvHeader(line))) {
+                continue;
+            }
+            chunk.add(new Row(++rowNumber, line));
+            if (chunk.size() == chunkSize) {
+                writeResults(processChunk(chunk, format), output);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            writeResults(processChunk(chunk, format), output);
+        }
+    }
+
+    private BulkLoanResult[] processChunk(List<Row> chunk, Format format) {
+        BulkLoanResult[] results = new BulkLoanResult[chunk.size()];
+        LoanApplication[] applications = new LoanApplication[chunk.size()];
+        for (int i = 0; i < chunk.size(); i++) {
+            Row row = chunk.get(i);
+            try {
+                applications[i] = parse(row.line(), format);
+            } catch (IOException | RuntimeException e) {
+                results[i] = BulkLoanResult.failed(row.number(), null, "Malformed row: " + e.getMessage());
+            }
+        }
+
+        LoanService.LoanDraft[] drafts = new LoanService.LoanDraft[chunk.size()];
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                for (int i = 0; i < applications.length; i++) {
+                    LoanApplication application = applications[i];
+                    if (application == null) {
+                        continue;
+                    }
+                    try {
+                        if (application.customerId() == null || application.amount() == null
+                                || application.interestRate() == null || application.installments() == null) {
+                            throw new IllegalArgumentException("customerId, amount, interestRate and installments are required");
+                        }
+                        drafts[i] = loanService.reserveLoan(application.customerId(), application.amount(),
+                                application.interestRate(), application.installments());
+                    } catch (RuntimeException e) {
+                        results[i] = BulkLoanResult.failed(chunk.get(i).number(), application.customerId(), e.getMessage());
+                    }
+                }
+                for (int i = 0; i < drafts.length; i++) {
+                    if (drafts[i] != null) {
+                        Loan loan = loanService.persistLoan(drafts[i]);
+                        results[i] = BulkLoanResult.created(chunk.get(i).number(), drafts[i].customerId(), loan.getId());
+                    }
+                }
+                entityManager.flush();
+                entityManager.clear();
+            });
+        } catch (RuntimeException e) {
+            // The whole chunk was rolled back, reservations included, so none of its loans exist
+            String message = "Chunk rolled back: " + e.getMessage();
+            for (int i = 0; i < drafts.length; i++) {
+                if (drafts[i] != null) {
+                    results[i] = BulkLoanResult.failed(chunk.get(i).number(), drafts[i].customerId(), message);
+                }
+            }
+        }
+        return results;
+    }
+
+    private LoanApplication parse(String line, Format format) throws IOException {
+        if (format == Format.NDJSON) {
+            return objectMapper.readValue(line, LoanApplication.class);
+        }
+        String[] fields = line.split(",", -1);
+        if (fields.length != 4) {
+            throw new IllegalArgumentException("expected customerId,amount,interestRate,installments");
+        }
+        return new LoanApplication(
+                Long.valueOf(fields[0].trim()),
+                new BigDecimal(fields[1].trim()),
+                new BigDecimal(fields[2].trim()),
+                Integer.valueOf(fields[3].trim()));
+    }
+
+    private boolean isCsvHeader(String line) {
+        return !line.isEmpty() && !Character.isDigit(line.trim().charAt(0));
+    }
+
+    private void writeResults(BulkLoanResult[] results, OutputStream output) throws IOException {
+        for (BulkLoanResult result : results) {
+            output.write(objectMapper.writeValueAsBytes(result));
+            output.write('\n');
+        }
+        output.flush();
+    }
+
+    private record Row(long number, String line) {
+    }
+}
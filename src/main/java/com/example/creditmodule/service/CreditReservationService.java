@@ -0,0 +1,134 @@
+package com.example.creditmodule.service;
+
+import com.example.creditmodule.analytics.PortfolioAnalytics;
+import com.example.creditmodule.repository.CustomerRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Reserves and releases customer credit without read-modify-write races.
+ * <p>
+ * A reservation is a conditional {@code UPDATE} that only succeeds while enough limit is left. It runs
+ * in the caller's transaction, so it commits or rolls back together with the loan it pays for and a
+ * crash between the two cannot leave credit reserved for a loan that does not exist. The customer row
+ * stays locked until that transaction completes. Within this JVM, requests for the same customer queue
+ * on a striped lock held for the same span instead of piling up on the database row lock; different
+ * customers hash to different stripes and proceed in parallel. A transaction that reserves for several
+ * customers waits at most {@code credit.reservation.lock-timeout} for each further stripe, so two such
+ * transactions cannot block each other forever.
+ */
+@Service
+public class CreditReservationService {
+
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final CustomerRepository customerRepository;
+    private final PortfolioAnalytics portfolioAnalytics;
+    private final TransactionTemplate newTransaction;
+    private final ReentrantLock[] stripes;
+    private final long lockTimeoutNanos;
+
+    public CreditReservationService(CustomerRepository customerRepository,
+                                    PortfolioAnalytics portfolioAnalytics,
+                                    PlatformTransactionManager transactionManager,
+                                    @Value("${credit.reservation.lock-stripes:64}") int stripeCount,
+                                    @Value("${credit.reservation.lock-timeout:10s}") Duration lockTimeout) {
+        if (Integer.bitCount(stripeCount) != 1) {
+            throw new IllegalArgumentException("Lock stripe count must be a power of two");
+        }
+        this.customerRepository = customerRepository;
+        this.portfolioAnalytics = portfolioAnalytics;
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.stripes = new ReentrantLock[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        this.lockTimeoutNanos = lockTimeout.toNanos();
+    }
+
+    /**
+     * Reserves {@code amount} against the customer's limit in the current transaction. Without one,
+     * the reservation is committed on its own.
+     * <p>
+     * A rejected reservation does not mark the caller's transaction for rollback, so a caller
+     * originating several loans can carry on with the others.
+     *
+     * @throws RuntimeException with message "Insufficient credit limit" if the limit would be exceeded
+     */
+    public void reserve(Long customerId, BigDecimal amount) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            reserveWithRetry(customerId, amount);
+            return;
+        }
+        holdStripeUntilCompletion(customerId);
+        if (customerRepository.reserveCredit(customerId, amount) == 0) {
+            throw new RuntimeException("Insufficient credit limit");
+        }
+        portfolioAnalytics.creditUsed(amount);
+    }
+
+    /**
+     * Gives back credit inside the caller's transaction, e.g. when installments are paid.
+     */
+    @Transactional
+    public void release(Long customerId, BigDecimal amount) {
+        if (customerRepository.releaseCredit(customerId, amount) == 1) {
+            portfolioAnalytics.creditUsed(amount.negate());
+        }
+    }
+
+    private void reserveWithRetry(Long customerId, BigDecimal amount) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                newTransaction.executeWithoutResult(status -> reserve(customerId, amount));
+                return;
+            } catch (ConcurrencyFailureException e) {
+                // Only reachable when another node holds the row; the stripe lock rules out local contention
+                if (attempt == MAX_ATTEMPTS) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    // The row lock taken by the reservation lasts until commit, so the stripe does too
+    private void holdStripeUntilCompletion(Long customerId) {
+        ReentrantLock lock = stripeFor(customerId);
+        if (lock.isHeldByCurrentThread()) {
+            return;
+        }
+        try {
+            if (!lock.tryLock(lockTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                throw new CannotAcquireLockException("Timed out waiting to reserve credit for customer " + customerId);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CannotAcquireLockException("Interrupted while waiting to reserve credit for customer " + customerId, e);
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                lock.unlock();
+            }
+        });
+    }
+
+    private ReentrantLock stripeFor(Long customerId) {
+        int hash = Long.hashCode(customerId) * 0x9E3779B9;
+        return stripes[(hash ^ (hash >>> 16)) & (stripes.length - 1)];
+    }
+}
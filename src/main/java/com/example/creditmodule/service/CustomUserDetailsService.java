@@ -3,12 +3,17 @@ package com.example.creditmodule.service;
 import com.example.creditmodule.module.User;
 import com.example.creditmodule.repository.UserRepository;
 import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
+/**
+ * Loads users for HTTP Basic authentication. Deliberately not a {@code UserDetailsService} bean:
+ * {@code SecurityConfig} hands it to the one {@code DaoAuthenticationProvider} behind the credential
+ * cache, and a {@code UserDetailsService} bean next to that provider bean would be ignored by Spring
+ * Security with a startup warning.
+ */
 @Service
-public class CustomUserDetailsService implements UserDetailsService {
+public class CustomUserDetailsService {
 
     private final UserRepository userRepository;
 
@@ -16,7 +21,6 @@ public class CustomUserDetailsService implements UserDetailsService {
         this.userRepository = userRepository;
     }
 
-    @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
         User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found"));
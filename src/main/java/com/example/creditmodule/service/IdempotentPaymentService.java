@@ -0,0 +1,148 @@
+package com.example.creditmodule.service;
+
+import com.example.creditmodule.cache.BoundedCache;
+import com.example.creditmodule.module.IdempotencyRecord;
+import com.example.creditmodule.repository.IdempotencyRecordRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Runs a loan payment at most once per {@code Idempotency-Key}. The outcome of every keyed payment is
+ * committed to the idempotency table in the same transaction as the payment itself, and kept in a
+ * bounded in-memory cache for quick replays; a retry is answered from the cache, or from the table
+ * once the cache has forgotten it, without reading any installment. Duplicates that arrive while the
+ * first execution is still running wait for its result instead of paying again. Failed payments
+ * are not recorded, so they can be retried with the same key. Amounts are stored with
+ * {@link IdempotencyRecord#AMOUNT_SCALE} decimal places; a keyed payment with more is rejected rather
+ * than stored rounded, which would make its own retry look like a different amount.
+ */
+@Service
+public class IdempotentPaymentService {
+
+    private static final int MAX_KEY_LENGTH = 100;
+
+    private final LoanService loanService;
+    private final IdempotencyRecordRepository recordRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration retention;
+    private final BoundedCache<String, StoredPayment> recent;
+    private final ConcurrentMap<String, CompletableFuture<StoredPayment>> inFlight = new ConcurrentHashMap<>();
+
+    public IdempotentPaymentService(LoanService loanService,
+                                    IdempotencyRecordRepository recordRepository,
+                                    TransactionTemplate transactionTemplate,
+                                    @Value("${credit.idempotency.cache-size:10000}") int cacheSize,
+                                    @Value("${credit.idempotency.cache-ttl:10m}") Duration cacheTtl,
+                                    @Value("${credit.idempotency.retention:24h}") Duration retention) {
+        this.loanService = loanService;
+        this.recordRepository = recordRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.retention = retention;
+        this.recent = new BoundedCache<>(cacheSize, cacheTtl);
+    }
+
+    public String payLoan(String idempotencyKey, Long loanId, BigDecimal paymentAmount) {
+        String requestKey = requestKey(idempotencyKey, loanId);
+        if (paymentAmount != null && paymentAmount.stripTrailingZeros().scale() > IdempotencyRecord.AMOUNT_SCALE) {
+            throw new IllegalArgumentException("Payment amount with an Idempotency-Key may have at most "
+                    + IdempotencyRecord.AMOUNT_SCALE + " decimal places");
+        }
+        StoredPayment stored = recent.get(requestKey);
+        if (stored != null) {
+            return stored.replay(paymentAmount);
+        }
+
+        CompletableFuture<StoredPayment> execution = new CompletableFuture<>();
+        CompletableFuture<StoredPayment> running = inFlight.putIfAbsent(requestKey, execution);
+        if (running != null) {
+            return await(running).replay(paymentAmount);
+        }
+        try {
+            StoredPayment result = loanService.serializedOnLoan(loanId,
+                    () -> executeOnce(requestKey, loanId, paymentAmount));
+            recent.put(requestKey, result);
+            execution.complete(result);
+            return result.replay(paymentAmount);
+        } catch (RuntimeException e) {
+            execution.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(requestKey, execution);
+        }
+    }
+
+    @Scheduled(cron = "${credit.idempotency.purge-cron:0 15 * * * *}")
+    public void purgeExpired() {
+        recordRepository.deleteCreatedBefore(LocalDateTime.now().minus(retention));
+    }
+
+    BoundedCache<String, StoredPayment> cache() {
+        return recent;
+    }
+
+    private StoredPayment executeOnce(String requestKey, Long loanId, BigDecimal paymentAmount) {
+        var committed = recordRepository.findById(requestKey);
+        if (committed.isPresent()) {
+            return StoredPayment.of(committed.get());
+        }
+        try {
+            return transactionTemplate.execute(status -> {
+                String response = loanService.payLoan(loanId, paymentAmount);
+                IdempotencyRecord record = new IdempotencyRecord();
+                record.setRequestKey(requestKey);
+                record.setLoanId(loanId);
+                record.setPaymentAmount(paymentAmount);
+                record.setResponse(response);
+                record.setCreatedAt(LocalDateTime.now());
+                recordRepository.saveAndFlush(record);
+                return new StoredPayment(paymentAmount, response);
+            });
+        } catch (DataIntegrityViolationException e) {
+            // Another instance committed this key first; our payment was rolled back with the insert
+            return recordRepository.findById(requestKey).map(StoredPayment::of).orElseThrow(() -> e);
+        }
+    }
+
+    private static StoredPayment await(CompletableFuture<StoredPayment> running) {
+        try {
+            return running.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private static String requestKey(String idempotencyKey, Long loanId) {
+        if (idempotencyKey == null || idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Idempotency-Key must be between 1 and " + MAX_KEY_LENGTH + " characters");
+        }
+        return loanId + ":" + idempotencyKey;
+    }
+
+    record StoredPayment(BigDecimal paymentAmount, String response) {
+
+        static StoredPayment of(IdempotencyRecord record) {
+            return new StoredPayment(record.getPaymentAmount(), record.getResponse());
+        }
+
+        String replay(BigDecimal requestedAmount) {
+            if (paymentAmount.compareTo(requestedAmount) != 0) {
+                throw new IllegalArgumentException("Idempotency-Key was already used for a different payment amount");
+            }
+            return response;
+        }
+    }
+}
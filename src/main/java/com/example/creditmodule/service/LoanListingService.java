@@ -0,0 +1,134 @@
+package com.example.creditmodule.service;
+
+import com.example.creditmodule.module.KeysetPage;
+import com.example.creditmodule.module.Loan;
+import com.example.creditmodule.module.LoanInstallment;
+import com.example.creditmodule.module.LoanSummary;
+import com.example.creditmodule.repository.LoanInstallmentRepository;
+import com.example.creditmodule.repository.LoanRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Large loan and installment listings, either one keyset page at a time or streamed as a JSON array
+ * straight off a JPA {@link Stream}. The streamed form runs inside one read-only transaction and
+ * detaches every row once it is written, so memory stays flat however many rows the customer has.
+ */
+@Service
+public class LoanListingService {
+
+    private static final int FLUSH_EVERY = 100;
+
+    private final LoanRepository loanRepository;
+    private final LoanInstallmentRepository installmentRepository;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate readOnlyTransaction;
+    private final int maxPageSize;
+
+    public LoanListingService(LoanRepository loanRepository,
+                              LoanInstallmentRepository installmentRepository,
+                              EntityManager entityManager,
+                              ObjectMapper objectMapper,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${credit.listing.max-page-size:500}") int maxPageSize) {
+        this.loanRepository = loanRepository;
+        this.installmentRepository = installmentRepository;
+        this.entityManager = entityManager;
+        this.objectMapper = objectMapper;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.maxPageSize = maxPageSize;
+    }
+
+    public KeysetPage<Loan> loanPage(Long customerId, Boolean paid, Long after, int size) {
+        int pageSize = validatePageSize(size);
+        List<Loan> rows = loanRepository.findPage(customerId, paid, after == null ? 0 : after, Limit.of(pageSize + 1));
+        return toPage(rows, pageSize, Loan::getId);
+    }
+
+    public KeysetPage<LoanInstallment> installmentPage(Long loanId, Boolean paid, LocalDate dueFrom, LocalDate dueTo,
+                                                       Long after, int size) {
+        int pageSize = validatePageSize(size);
+        validateDueRange(dueFrom, dueTo);
+        List<LoanInstallment> rows = installmentRepository.findPage(loanId, paid, dueFrom, dueTo,
+                after == null ? 0 : after, Limit.of(pageSize + 1));
+        return toPage(rows, pageSize, LoanInstallment::getId);
+    }
+
+    public List<LoanSummary> summaries(Long customerId, Boolean paid) {
+        return loanRepository.summarizeByCustomerId(customerId, paid, LocalDate.now());
+    }
+
+    public void exportLoans(Long customerId, Boolean paid, OutputStream output) throws IOException {
+        export(output, () -> loanRepository.streamByCustomerId(customerId, paid));
+    }
+
+    public void exportInstallments(Long loanId, Boolean paid, LocalDate dueFrom, LocalDate dueTo,
+                                   OutputStream output) throws IOException {
+        validateDueRange(dueFrom, dueTo);
+        export(output, () -> installmentRepository.streamByLoanId(loanId, paid, dueFrom, dueTo));
+    }
+
+    private <T> void export(OutputStream output, Supplier<Stream<T>> query) throws IOException {
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(output);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.writeStartArray();
+        try {
+            readOnlyTransaction.executeWithoutResult(status -> {
+                try (Stream<T> rows = query.get()) {
+                    int written = 0;
+                    for (T row : (Iterable<T>) rows::iterator) {
+                        generator.writeObject(row);
+                        entityManager.detach(row);
+                        if (++written % FLUSH_EVERY == 0) {
+                            generator.flush();
+                        }
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        generator.writeEndArray();
+        generator.flush();
+    }
+
+    private <T> KeysetPage<T> toPage(List<T> rows, int pageSize, Function<T, Long> id) {
+        if (rows.size() <= pageSize) {
+            return new KeysetPage<>(rows, null);
+        }
+        List<T> items = rows.subList(0, pageSize);
+        return new KeysetPage<>(List.copyOf(items), id.apply(items.get(pageSize - 1)));
+    }
+
+    private int validatePageSize(int size) {
+        if (size < 1 || size > maxPageSize) {
+            throw new IllegalArgumentException("Page size must be between 1 and " + maxPageSize);
+        }
+        return size;
+    }
+
+    private void validateDueRange(LocalDate dueFrom, LocalDate dueTo) {
+        if (dueFrom != null && dueTo != null && dueFrom.isAfter(dueTo)) {
+            throw new IllegalArgumentException("dueFrom must not be after dueTo");
+        }
+    }
+}
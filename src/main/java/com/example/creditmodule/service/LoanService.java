@@ -1,49 +1,114 @@
 package com.example.creditmodule.service;
 
+import com.example.creditmodule.analytics.PortfolioAnalytics;
+import com.example.creditmodule.concurrent.KeyedSerialExecutor;
 import com.example.creditmodule.module.Customer;
+import com.example.creditmodule.module.CustomerPayment;
 import com.example.creditmodule.module.Loan;
 import com.example.creditmodule.module.LoanInstallment;
-import com.example.creditmodule.module.User;
+import com.example.creditmodule.module.LoanQuote;
+import com.example.creditmodule.module.PaymentSimulation;
+import com.example.creditmodule.module.ScheduledInstallment;
 import com.example.creditmodule.repository.CustomerRepository;
 import com.example.creditmodule.repository.LoanInstallmentRepository;
 import com.example.creditmodule.repository.LoanRepository;
-import com.example.creditmodule.repository.UserRepository;
+import io.micrometer.core.annotation.Timed;
+import org.springframework.dao.ConcurrencyFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
 
 @Service
+@Timed("credit.loan.service")
 public class LoanService {
 
+    // Times payCustomer takes a customer's loans again when one was opened while it was taking them
+    private static final int MAX_LOAN_SET_ATTEMPTS = 3;
+
     private final CustomerRepository customerRepository;
     private final LoanRepository loanRepository;
     private final LoanInstallmentRepository installmentRepository;
-    private final UserRepository userRepository;
+    private final OwnershipCache ownershipCache;
+    private final CreditReservationService creditReservationService;
+    private final TransactionTemplate transactionTemplate;
+    private final ScheduleEngine scheduleEngine;
+    private final PaymentLedger paymentLedger;
+    private final PaymentOutbox paymentOutbox;
+    private final OpenInstallmentCache openInstallmentCache;
+    private final PortfolioAnalytics portfolioAnalytics;
+    private final KeyedSerialExecutor<Long> paymentsByLoan = new KeyedSerialExecutor<>();
 
     public LoanService(CustomerRepository customerRepository,
                        LoanRepository loanRepository,
-                       LoanInstallmentRepository installmentRepository, UserRepository userRepository) {
+                       LoanInstallmentRepository installmentRepository, OwnershipCache ownershipCache,
+                       CreditReservationService creditReservationService,
+                       TransactionTemplate transactionTemplate,
+                       ScheduleEngine scheduleEngine,
+                       PaymentLedger paymentLedger,
+                       PaymentOutbox paymentOutbox,
+                       OpenInstallmentCache openInstallmentCache,
+                       PortfolioAnalytics portfolioAnalytics) {
         this.customerRepository = customerRepository;
         this.loanRepository = loanRepository;
         this.installmentRepository = installmentRepository;
-        this.userRepository = userRepository;
+        this.ownershipCache = ownershipCache;
+        this.creditReservationService = creditReservationService;
+        this.transactionTemplate = transactionTemplate;
+        this.scheduleEngine = scheduleEngine;
+        this.paymentLedger = paymentLedger;
+        this.paymentOutbox = paymentOutbox;
+        this.openInstallmentCache = openInstallmentCache;
+        this.portfolioAnalytics = portfolioAnalytics;
     }
 
     public void createLoan(Long customerId, BigDecimal amount, BigDecimal interestRate, int installments) {
+        transactionTemplate.executeWithoutResult(status ->
+                persistLoan(reserveLoan(customerId, amount, interestRate, installments)));
+    }
+
+    /**
+     * Validates an application and reserves its credit in the caller's transaction, so the reservation
+     * commits or rolls back together with the loan that {@link #persistLoan} then writes.
+     */
+    LoanDraft reserveLoan(Long customerId, BigDecimal amount, BigDecimal interestRate, int installments) {
         Customer customer = validateCustomer(customerId);
         validateLoanParameters(amount, interestRate, installments);
 
         BigDecimal totalLoanAmount = calculateTotalLoanAmount(amount, interestRate);
         validateCreditLimit(customer, totalLoanAmount);
+        creditReservationService.reserve(customerId, totalLoanAmount);
+        return new LoanDraft(customerId, totalLoanAmount, interestRate, installments);
+    }
 
-        Loan loan = saveLoan(customerId, totalLoanAmount, installments);
-        createInstallments(loan, totalLoanAmount, installments);
-
-        updateCustomerCreditLimit(customer, totalLoanAmount);
+    /**
+     * Persists a reserved loan and its installments in the transaction the reservation was made in.
+     */
+    Loan persistLoan(LoanDraft draft) {
+        Loan loan = saveLoan(draft.customerId(), draft.totalAmount(), draft.installments());
+        createInstallments(loan, draft.totalAmount(), draft.interestRate(), draft.installments());
+        return loan;
+    }
+    /**
+     * Previews the schedule of a loan without touching the database.
+     */
+    public LoanQuote quoteLoan(BigDecimal amount, BigDecimal interestRate, int installments) {
+        validateLoanParameters(amount, interestRate, installments);
+        return scheduleEngine.quote(amount, interestRate, installments, LocalDate.now());
     }
     public List<Loan> listLoans(Long customerId) {
         return loanRepository.findByCustomerId(customerId);
@@ -51,7 +116,160 @@ public class LoanService {
     public List<LoanInstallment> listInstallments(Long loanId) {
         return installmentRepository.findByLoanId(loanId);
     }
+    /**
+     * Pays installments of a loan. Payments on the same loan are applied one at a time, in arrival
+     * order; payments on different loans run in parallel.
+     */
     public String payLoan(Long loanId, BigDecimal paymentAmount) {
+        return serializedOnLoan(loanId, () -> transactionTemplate.execute(status -> applyPayment(loanId, paymentAmount)));
+    }
+
+    /**
+     * Runs {@code work} while no payment on {@code loanId} is in progress, and holds further payments
+     * on the loan off until it returns, or until the transaction it runs in completes.
+     */
+    public <T> T serializedOnLoan(Long loanId, Supplier<T> work) {
+        return paymentsByLoan.execute(loanId, work);
+    }
+
+    /**
+     * Works out what {@link #payLoan} would do with {@code paymentAmount} today, from a cached snapshot
+     * of the loan's payable installments; nothing is written and no loan is held.
+     */
+    public PaymentSimulation simulatePayment(Long loanId, BigDecimal paymentAmount) {
+        if (paymentAmount == null || paymentAmount.signum() < 0) {
+            throw new IllegalArgumentException("Payment amount must not be negative");
+        }
+        LocalDate today = LocalDate.now();
+        OpenInstallmentCache.OpenInstallments open = openInstallmentCache.get(loanId, today);
+        if (open == null) {
+            throw new RuntimeException("Loan not found");
+        }
+        PaymentResult result = planPayments(open.payable(), paymentAmount, today).result();
+        BigDecimal nextInstallmentAmount = null;
+        if (result.paidInstallmentsCount < open.payable().size()) {
+            LoanInstallment next = open.payable().get(result.paidInstallmentsCount);
+            nextInstallmentAmount = next.getAmount().add(calculateAdjustment(next, today));
+        }
+        return new PaymentSimulation(loanId, paymentAmount, result.paidInstallmentsCount, result.totalPaid,
+                result.totalDiscount.abs(), result.totalPenalty, paymentAmount.subtract(result.totalPaid),
+                nextInstallmentAmount, result.paidInstallmentsCount > 0
+                        && result.paidInstallmentsCount == open.remainingInstallments());
+    }
+
+    /**
+     * Spreads one payment over all open loans of a customer in the order given by {@code policy}, with
+     * the same installment waterfall as {@link #payLoan}: installments are paid in that order until the
+     * remaining amount does not cover the next one. The loans are held against other payments for the
+     * duration, and the whole allocation commits or rolls back as one transaction.
+     * <p>
+     * The open loans are read again once they are held. A loan opened in between is not skipped: the
+     * loans are taken again including it, up to three times.
+     *
+     * @throws ConcurrencyFailureException if the customer's loans kept changing on every attempt
+     */
+    public CustomerPayment payCustomer(Long customerId, BigDecimal paymentAmount, CustomerPayment.Policy policy) {
+        if (paymentAmount == null || paymentAmount.signum() <= 0) {
+            throw new IllegalArgumentException("Payment amount must be positive");
+        }
+        validateCustomer(customerId);
+        List<Long> loanIds = loanRepository.findOpenLoanIds(customerId);
+        for (int attempt = 1; ; attempt++) {
+            List<Long> heldIds = loanIds;
+            CustomerPayment payment = serializedOnLoans(heldIds, 0, () -> transactionTemplate.execute(
+                    status -> applyCustomerPayment(customerId, heldIds, paymentAmount, policy)));
+            if (payment != null) {
+                return payment;
+            }
+            if (attempt == MAX_LOAN_SET_ATTEMPTS) {
+                throw new ConcurrencyFailureException("Loans of customer " + customerId
+                        + " kept changing while the payment was being allocated");
+            }
+            loanIds = loanRepository.findOpenLoanIds(customerId);
+        }
+    }
+
+    // Loans are always taken in ascending id order, so two allocations over the same loans cannot deadlock
+    private <T> T serializedOnLoans(List<Long> loanIds, int from, Supplier<T> work) {
+        if (from == loanIds.size()) {
+            return work.get();
+        }
+        return serializedOnLoan(loanIds.get(from), () -> serializedOnLoans(loanIds, from + 1, work));
+    }
+
+    // Returns null, having written nothing, if the customer has an open loan that is not held
+    private CustomerPayment applyCustomerPayment(Long customerId, List<Long> heldIds, BigDecimal paymentAmount,
+                                                 CustomerPayment.Policy policy) {
+        Set<Long> held = new HashSet<>(heldIds);
+        Map<Long, Loan> loans = new HashMap<>();
+        for (Loan loan : loanRepository.findOpenLoans(customerId)) {
+            if (!held.contains(loan.getId())) {
+                return null;
+            }
+            loans.put(loan.getId(), loan);
+        }
+        if (loans.isEmpty()) {
+            return new CustomerPayment(customerId, policy, 0, BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO,
+                    paymentAmount, List.of());
+        }
+        List<LoanInstallment> installments = new ArrayList<>(
+                installmentRepository.findPayableInstallmentsOfLoans(loans.keySet(), LocalDate.now().plusMonths(3)));
+        if (policy == CustomerPayment.Policy.HIGHEST_PENALTY_FIRST) {
+            orderByPenalty(installments);
+        }
+
+        PaymentResult total = processPayments(installments, paymentAmount);
+
+        Map<Long, List<LoanInstallment>> paidByLoan = new LinkedHashMap<>();
+        for (LoanInstallment installment : installments.subList(0, total.paidInstallmentsCount)) {
+            paidByLoan.computeIfAbsent(installment.getLoanId(), id -> new ArrayList<>()).add(installment);
+        }
+        List<CustomerPayment.LoanAllocation> allocations = new ArrayList<>(paidByLoan.size());
+        long lastSequence = 0;
+        for (Map.Entry<Long, List<LoanInstallment>> entry : paidByLoan.entrySet()) {
+            Loan loan = loans.get(entry.getKey());
+            List<LoanInstallment> paid = entry.getValue();
+            BigDecimal amountPaid = BigDecimal.ZERO;
+            BigDecimal principalPaid = BigDecimal.ZERO;
+            for (LoanInstallment installment : paid) {
+                amountPaid = amountPaid.add(installment.getPaidAmount());
+                principalPaid = principalPaid.add(installment.getAmount());
+            }
+            // Releases of one customer are merged into a single credit limit update when the outbox drains
+            updateLoanAndCustomerAfterPayment(loan, new PaymentResult(paid.size(), amountPaid, BigDecimal.ZERO,
+                    BigDecimal.ZERO, principalPaid));
+            if (paymentLedger.isEnabled()) {
+                lastSequence = paymentLedger.append(loan, paid, paid.get(0).getPaymentDate(), principalPaid);
+                loan.setJournalSequence(lastSequence);
+            }
+            allocations.add(new CustomerPayment.LoanAllocation(loan.getId(), paid.size(), amountPaid, loan.isPaid()));
+        }
+        if (lastSequence > 0) {
+            paymentLedger.awaitDurable(lastSequence);
+        }
+
+        return new CustomerPayment(customerId, policy, total.paidInstallmentsCount, total.totalPaid,
+                total.totalDiscount.abs(), total.totalPenalty, paymentAmount.subtract(total.totalPaid), allocations);
+    }
+
+    // Regroups due-date ordered installments loan by loan, the loan with the largest late penalty first
+    private void orderByPenalty(List<LoanInstallment> installments) {
+        LocalDate today = LocalDate.now();
+        Map<Long, BigDecimal> penaltyByLoan = new HashMap<>();
+        Map<Long, Integer> firstPosition = new HashMap<>();
+        for (int i = 0; i < installments.size(); i++) {
+            LoanInstallment installment = installments.get(i);
+            BigDecimal penalty = calculateAdjustment(installment, today).max(BigDecimal.ZERO);
+            penaltyByLoan.merge(installment.getLoanId(), penalty, BigDecimal::add);
+            firstPosition.putIfAbsent(installment.getLoanId(), i);
+        }
+        // Stable sort: installments of one loan keep their due-date order, ties keep the oldest due loan first
+        installments.sort(Comparator
+                .comparing((LoanInstallment installment) -> penaltyByLoan.get(installment.getLoanId())).reversed()
+                .thenComparing(installment -> firstPosition.get(installment.getLoanId())));
+    }
+
+    private String applyPayment(Long loanId, BigDecimal paymentAmount) {
         Loan loan = validateLoan(loanId);
         List<LoanInstallment> installments = getPayableInstallments(loanId);
 
@@ -60,7 +278,12 @@ public class LoanService {
         }
 
         PaymentResult paymentResult = processPayments(installments, paymentAmount);
-        updateLoanAndCustomerAfterPayment(loan, paymentResult.totalPrincipalPaid);
+        updateLoanAndCustomerAfterPayment(loan, paymentResult);
+        if (paymentResult.paidInstallmentsCount > 0 && paymentLedger.isEnabled()) {
+            List<LoanInstallment> paid = installments.subList(0, paymentResult.paidInstallmentsCount);
+            loan.setJournalSequence(paymentLedger.record(loan, paid, paid.get(0).getPaymentDate(),
+                    paymentResult.totalPrincipalPaid));
+        }
 
         return buildPaymentResultMessage(paymentResult, loan);
     }
@@ -80,9 +303,10 @@ public class LoanService {
     }
 
     private BigDecimal calculateTotalLoanAmount(BigDecimal amount, BigDecimal interestRate) {
-        return amount.multiply(BigDecimal.ONE.add(interestRate));
+        return scheduleEngine.totalAmount(amount, interestRate);
     }
 
+    // Cheap early rejection on the loaded snapshot; the reservation is the authoritative check
     private void validateCreditLimit(Customer customer, BigDecimal totalLoanAmount) {
         BigDecimal availableCredit = customer.getCreditLimit().subtract(customer.getUsedCreditLimit());
         if (availableCredit.compareTo(totalLoanAmount) < 0) {
@@ -95,30 +319,28 @@ public class LoanService {
         loan.setCustomerId(customerId);
         loan.setLoanAmount(totalLoanAmount);
         loan.setNumberOfInstallments(installments);
+        loan.setRemainingInstallments(installments);
         loan.setCreateDate(LocalDate.now());
         loan.setPaid(false);
         return loanRepository.save(loan);
     }
 
-    private void createInstallments(Loan loan, BigDecimal totalLoanAmount, int installments) {
-        BigDecimal installmentAmount = totalLoanAmount.divide(BigDecimal.valueOf(installments), BigDecimal.ROUND_HALF_UP);
-        LocalDate nextMonth = LocalDate.now().plusMonths(1).withDayOfMonth(1);
-
-        for (int i = 0; i < installments; i++) {
+    private void createInstallments(Loan loan, BigDecimal totalLoanAmount, BigDecimal interestRate, int installments) {
+        List<LoanInstallment> schedule = new ArrayList<>(installments);
+        for (ScheduledInstallment scheduled : scheduleEngine.schedule(totalLoanAmount, interestRate, installments, loan.getCreateDate())) {
             LoanInstallment installment = new LoanInstallment();
             installment.setLoanId(loan.getId());
-            installment.setAmount(installmentAmount);
+            installment.setAmount(scheduled.amount());
             installment.setPaidAmount(BigDecimal.ZERO);
-            installment.setDueDate(nextMonth.plusMonths(i));
+            installment.setDueDate(scheduled.dueDate());
             installment.setPaid(false);
-            installmentRepository.save(installment);
+            schedule.add(installment);
         }
+        // Sequence ids let Hibernate group these into JDBC batches (see hibernate.jdbc.batch_size)
+        installmentRepository.saveAll(schedule);
+        portfolioAnalytics.installmentsScheduled(schedule);
     }
 
-    private void updateCustomerCreditLimit(Customer customer, BigDecimal totalLoanAmount) {
-        customer.setUsedCreditLimit(customer.getUsedCreditLimit().add(totalLoanAmount));
-        customerRepository.save(customer);
-    }
     private Loan validateLoan(Long loanId) {
         return loanRepository.findById(loanId)
                 .orElseThrow(() -> new RuntimeException("Loan not found"));
@@ -126,21 +348,60 @@ public class LoanService {
 
     private List<LoanInstallment> getPayableInstallments(Long loanId) {
         LocalDate maxDueDate = LocalDate.now().plusMonths(3);
-        return installmentRepository.findByLoanId(loanId).stream()
-                .filter(installment -> !installment.isPaid() && installment.getDueDate().isBefore(maxDueDate))
-                .toList();
+        return installmentRepository.findPayableInstallments(loanId, maxDueDate);
     }
 
-    private PaymentResult processPayments(List<LoanInstallment> installments, BigDecimal paymentAmount) {
+    PaymentResult processPayments(List<LoanInstallment> installments, BigDecimal paymentAmount) {
+        LocalDate paymentDate = LocalDate.now();
+        return applyPlan(installments, planPayments(installments, paymentAmount, paymentDate), paymentDate);
+    }
+
+    // BigDecimal waterfall for amounts with sub-cent precision, which the fixed-point path cannot hold exactly
+    PaymentResult processPaymentsExact(List<LoanInstallment> installments, BigDecimal paymentAmount, LocalDate paymentDate) {
+        return applyPlan(installments, planPaymentsExact(installments, paymentAmount, paymentDate), paymentDate);
+    }
+
+    /**
+     * Runs the payment waterfall without modifying the installments.
+     */
+    PaymentPlan planPayments(List<LoanInstallment> installments, BigDecimal paymentAmount, LocalDate paymentDate) {
+        int count = installments.size();
+        long[] amountCents = new long[count];
+        long[] dueEpochDays = new long[count];
+        for (int i = 0; i < count; i++) {
+            LoanInstallment installment = installments.get(i);
+            if (!PaymentCalculator.isWholeCents(installment.getAmount())) {
+                return planPaymentsExact(installments, paymentAmount, paymentDate);
+            }
+            amountCents[i] = PaymentCalculator.toCents(installment.getAmount());
+            dueEpochDays[i] = installment.getDueDate().toEpochDay();
+        }
+
+        long[] paidUnits = new long[count];
+        PaymentCalculator.Waterfall waterfall = PaymentCalculator.waterfall(amountCents, dueEpochDays, count,
+                PaymentCalculator.toUnits(paymentAmount), paymentDate.toEpochDay(), paidUnits);
+
+        BigDecimal[] paidAmounts = new BigDecimal[waterfall.paidCount()];
+        for (int i = 0; i < paidAmounts.length; i++) {
+            paidAmounts[i] = PaymentCalculator.fromUnits(paidUnits[i]);
+        }
+        return new PaymentPlan(new PaymentResult(waterfall.paidCount(),
+                PaymentCalculator.fromUnits(waterfall.totalPaidUnits()),
+                PaymentCalculator.fromUnits(waterfall.totalDiscountUnits()),
+                PaymentCalculator.fromUnits(waterfall.totalPenaltyUnits()),
+                PaymentCalculator.fromCents(waterfall.totalPrincipalCents())), paidAmounts);
+    }
+
+    private PaymentPlan planPaymentsExact(List<LoanInstallment> installments, BigDecimal paymentAmount, LocalDate paymentDate) {
         BigDecimal remainingAmount = paymentAmount;
-        int paidInstallmentsCount = 0;
+        List<BigDecimal> paidAmounts = new ArrayList<>();
         BigDecimal totalDiscount = BigDecimal.ZERO;
         BigDecimal totalPenalty = BigDecimal.ZERO;
         BigDecimal totalPaid = BigDecimal.ZERO;
         BigDecimal totalPrincipalPaid = BigDecimal.ZERO;
 
         for (LoanInstallment installment : installments) {
-            BigDecimal adjustment = calculateAdjustment(installment);
+            BigDecimal adjustment = calculateAdjustment(installment, paymentDate);
             BigDecimal adjustedInstallmentAmount = installment.getAmount().add(adjustment);
 
             if (remainingAmount.compareTo(adjustedInstallmentAmount) >= 0) {
@@ -148,28 +409,37 @@ public class LoanService {
                 totalPaid = totalPaid.add(adjustedInstallmentAmount);
 
                 totalPrincipalPaid = totalPrincipalPaid.add(installment.getAmount());
-                installment.setPaidAmount(adjustedInstallmentAmount);
-                installment.setPaymentDate(LocalDate.now());
-                installment.setPaid(true);
-                installmentRepository.save(installment);
+                paidAmounts.add(adjustedInstallmentAmount);
 
                 if (adjustment.compareTo(BigDecimal.ZERO) < 0) {
                     totalDiscount = totalDiscount.add(adjustment.abs());
                 } else {
                     totalPenalty = totalPenalty.add(adjustment);
                 }
-
-                paidInstallmentsCount++;
             } else {
                 break;
             }
         }
 
-        return new PaymentResult(paidInstallmentsCount, totalPaid, totalDiscount, totalPenalty, totalPrincipalPaid);
+        return new PaymentPlan(new PaymentResult(paidAmounts.size(), totalPaid, totalDiscount, totalPenalty, totalPrincipalPaid),
+                paidAmounts.toArray(BigDecimal[]::new));
     }
 
-    private BigDecimal calculateAdjustment(LoanInstallment installment) {
-        LocalDate paymentDate = LocalDate.now();
+    private PaymentResult applyPlan(List<LoanInstallment> installments, PaymentPlan plan, LocalDate paymentDate) {
+        for (int i = 0; i < plan.paidAmounts().length; i++) {
+            LoanInstallment installment = installments.get(i);
+            installment.setPaidAmount(plan.paidAmounts()[i]);
+            installment.setPaymentDate(paymentDate);
+            installment.setPaid(true);
+            installmentRepository.save(installment);
+        }
+        if (plan.paidAmounts().length > 0) {
+            portfolioAnalytics.installmentsPaid(installments.subList(0, plan.paidAmounts().length));
+        }
+        return plan.result();
+    }
+
+    BigDecimal calculateAdjustment(LoanInstallment installment, LocalDate paymentDate) {
         LocalDate dueDate = installment.getDueDate();
         BigDecimal adjustment = BigDecimal.ZERO;
 
@@ -184,16 +454,34 @@ public class LoanService {
         return adjustment;
     }
 
-    private void updateLoanAndCustomerAfterPayment(Loan loan, BigDecimal totalPrincipalPaid) {
-        boolean allPaid = installmentRepository.findByLoanId(loan.getId()).stream().allMatch(LoanInstallment::isPaid);
-        if (allPaid) {
-            loan.setPaid(true);
-            loanRepository.save(loan);
+    private void updateLoanAndCustomerAfterPayment(Loan loan, PaymentResult result) {
+        if (result.paidInstallmentsCount == 0) {
+            return;
         }
+        loan.setRemainingInstallments(loan.getRemainingInstallments() - result.paidInstallmentsCount);
+        loan.setPaid(loan.getRemainingInstallments() == 0);
+        loanRepository.save(loan);
+        evictOpenInstallments(loan.getId());
+
+        // The customer row is shared by all of the customer's loans; it is updated after commit, in batches
+        paymentOutbox.creditReleased(loan.getCustomerId(), loan.getId(), result.totalPrincipalPaid);
+        if (loan.isPaid()) {
+            paymentOutbox.loanPaidOff(loan.getCustomerId(), loan.getId());
+        }
+    }
 
-        Customer customer = customerRepository.getReferenceById(loan.getCustomerId());
-        customer.setUsedCreditLimit(customer.getUsedCreditLimit().subtract(totalPrincipalPaid));
-        customerRepository.save(customer);
+    // Simulations must not see the snapshot from before this payment once it has committed
+    private void evictOpenInstallments(Long loanId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    openInstallmentCache.evict(loanId);
+                }
+            });
+        } else {
+            openInstallmentCache.evict(loanId);
+        }
     }
 
     private String buildPaymentResultMessage(PaymentResult result, Loan loan) {
@@ -207,7 +495,14 @@ public class LoanService {
         );
     }
 
-    private static class PaymentResult {
+    record LoanDraft(Long customerId, BigDecimal totalAmount, BigDecimal interestRate, int installments) {
+    }
+
+    // Amounts paid per installment, in waterfall order, for the first paidInstallmentsCount installments
+    record PaymentPlan(PaymentResult result, BigDecimal[] paidAmounts) {
+    }
+
+    static class PaymentResult {
         int paidInstallmentsCount;
         BigDecimal totalPaid;
         BigDecimal totalDiscount;
@@ -223,18 +518,18 @@ public class LoanService {
         }
     }
     public boolean isCustomerOwner(String username, Long customerId) {
-        Optional<User> user = userRepository.findByUsername(username);
-        return user.isPresent() && user.get().getCustomer() != null && user.get().getCustomer().getId().equals(customerId);
+        return ownershipCache.customerIdOf(username)
+                .map(id -> id.equals(customerId))
+                .orElse(false);
     }
 
     public boolean isLoanOwner(String username, Long loanId) {
-        Optional<User> user = userRepository.findByUsername(username);
-        if (user.isPresent() && user.get().getCustomer() != null) {
-            Long customerId = user.get().getCustomer().getId();
-            return loanRepository.findById(loanId)
-                    .map(loan -> loan.getCustomerId().equals(customerId))
-                    .orElse(false);
-        }
-        return false;
+        Optional<Long> customerId = ownershipCache.customerIdOf(username);
+        if (customerId.isEmpty()) {
+            return false;
+        }
+        return ownershipCache.ownerOfLoan(loanId)
+                .map(owner -> owner.equals(customerId.get()))
+                .orElse(false);
     }
 }
\ No newline at end of file
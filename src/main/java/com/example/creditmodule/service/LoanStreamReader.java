@@ -0,0 +1,97 @@
+package com.example.creditmodule.service;
+
+import com.example.creditmodule.module.Loan;
+import com.example.creditmodule.module.LoanInstallment;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import io.r2dbc.spi.Readable;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+
+/**
+ * Streaming reads of a customer's loans and a loan's installments over R2DBC, for clients that
+ * poll. Rows are pulled as the HTTP response asks for them, so a slow reader slows its own query
+ * down rather than buffering the whole result. The H2 driver runs the embedded engine on the calling
+ * thread, so each read still blocks that thread while the database works; the response is written on
+ * the bounded pool from {@code AsyncRequestConfig}.
+ * <p>
+ * The pool is private to this class on purpose; see {@code CreditModuleApplication}.
+ */
+@Service
+public class LoanStreamReader {
+
+    private final ConnectionPool pool;
+    private final DatabaseClient databaseClient;
+
+    public LoanStreamReader(@Value("${credit.reactive.url}") String url,
+                            @Value("${spring.datasource.username:sa}") String username,
+                            @Value("${spring.datasource.password:}") String password,
+                            @Value("${credit.reactive.pool-size:20}") int poolSize) {
+        ConnectionFactoryOptions options = ConnectionFactoryOptions.parse(url).mutate()
+                .option(ConnectionFactoryOptions.USER, username)
+                .option(ConnectionFactoryOptions.PASSWORD, password)
+                .build();
+        this.pool = new ConnectionPool(ConnectionPoolConfiguration.builder(ConnectionFactories.get(options))
+                .maxSize(poolSize)
+                .maxIdleTime(Duration.ofMinutes(30))
+                .build());
+        this.databaseClient = DatabaseClient.create(pool);
+    }
+
+    public Flux<Loan> streamLoans(Long customerId) {
+        return databaseClient.sql("select id, customer_id, loan_amount, number_of_installments, remaining_installments, "
+                        + "create_date, is_paid, journal_sequence from loan where customer_id = :customerId order by id")
+                .bind("customerId", customerId)
+                .map(LoanStreamReader::toLoan)
+                .all();
+    }
+
+    public Flux<LoanInstallment> streamInstallments(Long loanId) {
+        return databaseClient.sql("select id, loan_id, amount, paid_amount, due_date, payment_date, is_paid, "
+                        + "accrued_penalty, penalty_accrued_on from loan_installment where loan_id = :loanId order by due_date, id")
+                .bind("loanId", loanId)
+                .map(LoanStreamReader::toInstallment)
+                .all();
+    }
+
+    @PreDestroy
+    void close() {
+        pool.dispose();
+    }
+
+    private static Loan toLoan(Readable row) {
+        Loan loan = new Loan();
+        loan.setId(row.get("id", Long.class));
+        loan.setCustomerId(row.get("customer_id", Long.class));
+        loan.setLoanAmount(row.get("loan_amount", BigDecimal.class));
+        loan.setNumberOfInstallments(row.get("number_of_installments", Integer.class));
+        loan.setRemainingInstallments(row.get("remaining_installments", Integer.class));
+        loan.setCreateDate(row.get("create_date", LocalDate.class));
+        loan.setPaid(Boolean.TRUE.equals(row.get("is_paid", Boolean.class)));
+        loan.setJournalSequence(row.get("journal_sequence", Long.class));
+        return loan;
+    }
+
+    private static LoanInstallment toInstallment(Readable row) {
+        LoanInstallment installment = new LoanInstallment();
+        installment.setId(row.get("id", Long.class));
+        installment.setLoanId(row.get("loan_id", Long.class));
+        installment.setAmount(row.get("amount", BigDecimal.class));
+        installment.setPaidAmount(row.get("paid_amount", BigDecimal.class));
+        installment.setDueDate(row.get("due_date", LocalDate.class));
+        installment.setPaymentDate(row.get("payment_date", LocalDate.class));
+        installment.setPaid(Boolean.TRUE.equals(row.get("is_paid", Boolean.class)));
+        installment.setAccruedPenalty(row.get("accrued_penalty", BigDecimal.class));
+        installment.setPenaltyAccruedOn(row.get("penalty_accrued_on", LocalDate.class));
+        return installment;
+    }
+}
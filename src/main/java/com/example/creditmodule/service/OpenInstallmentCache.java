@@ -0,0 +1,83 @@
+package com.example.creditmodule.service;
+
+import com.example.creditmodule.cache.BoundedCache;
+import com.example.creditmodule.module.Loan;
+import com.example.creditmodule.module.LoanInstallment;
+import com.example.creditmodule.repository.LoanInstallmentRepository;
+import com.example.creditmodule.repository.LoanRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Snapshots of the installments a payment on a loan could settle today, for payment simulations.
+ * <p>
+ * A snapshot is dropped when a payment on its loan completes and is never reused on a later day,
+ * since the payable window moves with the date. A snapshot that was being loaded while some payment
+ * completed is returned but not cached, so a load racing a payment cannot keep pre-payment state
+ * around. The installments in a snapshot are detached and shared between callers: read them only.
+ */
+@Component
+public class OpenInstallmentCache {
+
+    private final LoanRepository loanRepository;
+    private final LoanInstallmentRepository installmentRepository;
+    private final BoundedCache<Long, OpenInstallments> byLoan;
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public OpenInstallmentCache(LoanRepository loanRepository,
+                                LoanInstallmentRepository installmentRepository,
+                                MeterRegistry meterRegistry,
+                                @Value("${credit.simulation.cache-size:10000}") int maxLoans,
+                                @Value("${credit.simulation.cache-ttl:5m}") Duration timeToLive) {
+        this.loanRepository = loanRepository;
+        this.installmentRepository = installmentRepository;
+        this.byLoan = new BoundedCache<>(maxLoans, timeToLive);
+        FunctionCounter.builder("credit.simulation.cache.requests", byLoan, BoundedCache::hitCount)
+                .tag("result", "hit")
+                .register(meterRegistry);
+        FunctionCounter.builder("credit.simulation.cache.requests", byLoan, BoundedCache::missCount)
+                .tag("result", "miss")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns the loan's open installments due before {@code today} plus three months, in due-date
+     * order, or null if there is no such loan.
+     */
+    public OpenInstallments get(Long loanId, LocalDate today) {
+        OpenInstallments cached = byLoan.get(loanId);
+        if (cached != null && cached.asOf().equals(today)) {
+            return cached;
+        }
+        long generation = invalidations.get();
+        Loan loan = loanRepository.findById(loanId).orElse(null);
+        if (loan == null) {
+            return null;
+        }
+        OpenInstallments loaded = new OpenInstallments(today, loan.getRemainingInstallments(),
+                List.copyOf(installmentRepository.findPayableInstallments(loanId, today.plusMonths(3))));
+        if (invalidations.get() == generation) {
+            byLoan.put(loanId, loaded);
+        }
+        return loaded;
+    }
+
+    public void evict(Long loanId) {
+        invalidations.incrementAndGet();
+        byLoan.invalidate(loanId);
+    }
+
+    BoundedCache<Long, OpenInstallments> cache() {
+        return byLoan;
+    }
+
+    public record OpenInstallments(LocalDate asOf, int remainingInstallments, List<LoanInstallment> payable) {
+    }
+}
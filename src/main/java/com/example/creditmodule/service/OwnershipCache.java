@@ -0,0 +1,100 @@
+package com.example.creditmodule.service;
+
+import com.example.creditmodule.cache.BoundedCache;
+import com.example.creditmodule.repository.LoanRepository;
+import com.example.creditmodule.repository.UserRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches the lookups behind the {@code @PreAuthorize} ownership checks: username to customer id and
+ * loan id to customer id. A loan never changes owner, so loan entries only leave by eviction; user
+ * entries are invalidated by {@link UserCacheInvalidator} whenever a user row changes.
+ * A user lookup that was running while some user entry was evicted is returned but not cached, so a
+ * load that read the row before the change committed cannot outlive the eviction.
+ * Users without a customer (admins) are cached as well, as {@link #NO_CUSTOMER}.
+ */
+@Component
+public class OwnershipCache {
+
+    private static final Long NO_CUSTOMER = -1L;
+
+    private final UserRepository userRepository;
+    private final LoanRepository loanRepository;
+    private final BoundedCache<String, Long> customerByUsername;
+    private final BoundedCache<Long, Long> customerByLoan;
+    private final AtomicLong userInvalidations = new AtomicLong();
+
+    public OwnershipCache(UserRepository userRepository,
+                          LoanRepository loanRepository,
+                          MeterRegistry meterRegistry,
+                          @Value("${credit.ownership-cache.users:10000}") int maxUsers,
+                          @Value("${credit.ownership-cache.loans:100000}") int maxLoans) {
+        this.userRepository = userRepository;
+        this.loanRepository = loanRepository;
+        this.customerByUsername = new BoundedCache<>(maxUsers);
+        this.customerByLoan = new BoundedCache<>(maxLoans);
+        bindMetrics(meterRegistry, "username", customerByUsername);
+        bindMetrics(meterRegistry, "loan", customerByLoan);
+    }
+
+    public Optional<Long> customerIdOf(String username) {
+        Long customerId = customerByUsername.get(username);
+        if (customerId == null) {
+            long generation = userInvalidations.get();
+            customerId = userRepository.findCustomerIdByUsername(username).orElse(NO_CUSTOMER);
+            if (userInvalidations.get() == generation) {
+                customerByUsername.put(username, customerId);
+            }
+        }
+        return NO_CUSTOMER.equals(customerId) ? Optional.empty() : Optional.of(customerId);
+    }
+
+    public Optional<Long> ownerOfLoan(Long loanId) {
+        return Optional.ofNullable(customerByLoan.computeIfAbsent(loanId,
+                id -> loanRepository.findCustomerIdById(id).orElse(null)));
+    }
+
+    public void evictUser(String username) {
+        userInvalidations.incrementAndGet();
+        customerByUsername.invalidate(username);
+    }
+
+    public void evictAll() {
+        userInvalidations.incrementAndGet();
+        customerByUsername.invalidateAll();
+        customerByLoan.invalidateAll();
+    }
+
+    BoundedCache<String, Long> usernameCache() {
+        return customerByUsername;
+    }
+
+    BoundedCache<Long, Long> loanCache() {
+        return customerByLoan;
+    }
+
+    private static void bindMetrics(MeterRegistry registry, String name, BoundedCache<?, ?> cache) {
+        FunctionCounter.builder("credit.ownership.cache.requests", cache, BoundedCache::hitCount)
+                .tag("cache", name).tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("credit.ownership.cache.requests", cache, BoundedCache::missCount)
+                .tag("cache", name).tag("result", "miss")
+                .register(registry);
+        FunctionCounter.builder("credit.ownership.cache.evictions", cache, BoundedCache::evictionCount)
+                .tag("cache", name)
+                .register(registry);
+        Gauge.builder("credit.ownership.cache.hit.ratio", cache, BoundedCache::hitRate)
+                .tag("cache", name)
+                .register(registry);
+        Gauge.builder("credit.ownership.cache.size", cache, BoundedCache::size)
+                .tag("cache", name)
+                .register(registry);
+    }
+}
@@ -0,0 +1,218 @@
+package com.example.creditmodule.service;
+
+import com.example.creditmodule.module.PaymentBatchReport;
+import com.example.creditmodule.module.PaymentInstruction;
+import com.example.creditmodule.repository.LoanRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Applies a remittance file of payments. Rows are partitioned by customer: each customer's rows are
+ * replayed in file order on a single worker, while different customers run in parallel. This keeps
+ * the installment waterfall of every loan strictly ordered without any cross-worker coordination;
+ * the credit limit release itself is an atomic UPDATE, so it stays correct against online traffic too.
+ * <p>
+ * A CSV file is parsed as it is read: every thousand rows the loans' owners are looked up
+ * and the rows handed to their customers' workers, so payments start before the upload has been read to
+ * the end. At most four chunks wait for the workers at a time. A row that cannot
+ * be parsed fails on its own and is reported with its line number; the rest of the file still applies.
+ */
+@Service
+public class PaymentBatchService {
+
+    private static final int LOOKUP_CHUNK = 1000;
+    private static final int CHUNKS_IN_FLIGHT = 4;
+    private static final String[] CSV_HEADER = {"loanId", "amount"};
+
+    private final LoanService loanService;
+    private final LoanRepository loanRepository;
+    private final ExecutorService workers;
+
+    public PaymentBatchService(LoanService loanService,
+                               LoanRepository loanRepository,
+                               @Value("${credit.payment-batch.workers:8}") int workerCount) {
+        if (workerCount < 1) {
+            throw new IllegalArgumentException("Worker count must be positive");
+        }
+        this.loanService = loanService;
+        this.loanRepository = loanRepository;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(workerCount, runnable -> {
+            Thread thread = new Thread(runnable, "payment-batch-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Applies a {@code loanId,amount} CSV file with an optional header line; each result's row is its line number.
+     */
+    public PaymentBatchReport processCsv(InputStream input) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        Batch batch = new Batch();
+        int lineNumber = 0;
+        boolean firstRow = true;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            String[] fields = line.split(",", -1);
+            if (firstRow) {
+                firstRow = false;
+                if (isCsvHeader(fields)) {
+                    continue;
+                }
+            }
+            if (fields.length != 2) {
+                batch.failed(lineNumber, null, "Malformed row, expected loanId,amount");
+                continue;
+            }
+            Long loanId;
+            try {
+                loanId = Long.valueOf(fields[0].trim());
+            } catch (NumberFormatException e) {
+                batch.failed(lineNumber, null, "Malformed loanId: " + fields[0].trim());
+                continue;
+            }
+            try {
+                batch.add(lineNumber, new PaymentInstruction(loanId, new BigDecimal(fields[1].trim())));
+            } catch (NumberFormatException e) {
+                batch.failed(lineNumber, loanId, "Malformed amount: " + fields[1].trim());
+            }
+        }
+        return batch.finish();
+    }
+
+    /**
+     * Applies already parsed payments; each result's row is the payment's position, starting at 1.
+     */
+    public PaymentBatchReport process(List<PaymentInstruction> payments) {
+        Batch batch = new Batch();
+        for (int i = 0; i < payments.size(); i++) {
+            batch.add(i + 1, payments.get(i));
+        }
+        return batch.finish();
+    }
+
+    private static boolean isCsvHeader(String[] fields) {
+        if (fields.length != CSV_HEADER.length) {
+            return false;
+        }
+        for (int i = 0; i < fields.length; i++) {
+            if (!fields[i].trim().equalsIgnoreCase(CSV_HEADER[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private PaymentBatchReport.RowResult apply(int row, PaymentInstruction payment) {
+        try {
+            if (payment.amount() == null || payment.amount().signum() <= 0) {
+                throw new IllegalArgumentException("Payment amount must be positive");
+            }
+            String message = loanService.payLoan(payment.loanId(), payment.amount());
+            return new PaymentBatchReport.RowResult(row, payment.loanId(), true, message);
+        } catch (RuntimeException e) {
+            return new PaymentBatchReport.RowResult(row, payment.loanId(), false, e.getMessage());
+        }
+    }
+
+    private Map<Long, Long> resolveCustomers(List<PendingRow> rows) {
+        List<Long> loanIds = rows.stream().map(row -> row.payment().loanId()).filter(Objects::nonNull).distinct().toList();
+        Map<Long, Long> customerByLoan = new HashMap<>(loanIds.size() * 2);
+        loanRepository.findByIdIn(loanIds)
+                .forEach(owner -> customerByLoan.put(owner.getId(), owner.getCustomerId()));
+        return customerByLoan;
+    }
+
+    /**
+     * One file being applied. Only the reading thread touches it; workers only complete row results.
+     */
+    private final class Batch {
+        private final long start = System.nanoTime();
+        private final List<CompletableFuture<PaymentBatchReport.RowResult>> results = new ArrayList<>();
+        private final List<PendingRow> pending = new ArrayList<>(LOOKUP_CHUNK);
+        // Last row handed out per customer; the customer's next row runs after it
+        private final Map<Long, CompletableFuture<?>> tailByCustomer = new HashMap<>();
+        private final Deque<CompletableFuture<?>> chunksInFlight = new ArrayDeque<>();
+
+        void failed(int row, Long loanId, String message) {
+            results.add(CompletableFuture.completedFuture(new PaymentBatchReport.RowResult(row, loanId, false, message)));
+        }
+
+        void add(int row, PaymentInstruction payment) {
+            CompletableFuture<PaymentBatchReport.RowResult> result = new CompletableFuture<>();
+            results.add(result);
+            pending.add(new PendingRow(row, payment, result));
+            if (pending.size() == LOOKUP_CHUNK) {
+                dispatch();
+            }
+        }
+
+        PaymentBatchReport finish() {
+            dispatch();
+            List<PaymentBatchReport.RowResult> rows = results.stream().map(CompletableFuture::join).toList();
+            long elapsedNanos = System.nanoTime() - start;
+            int succeeded = (int) rows.stream().filter(PaymentBatchReport.RowResult::success).count();
+            double perSecond = elapsedNanos == 0 ? 0 : rows.size() * 1_000_000_000d / elapsedNanos;
+            return new PaymentBatchReport(rows.size(), succeeded, rows.size() - succeeded, tailByCustomer.size(),
+                    elapsedNanos / 1_000_000, perSecond, rows);
+        }
+
+        private void dispatch() {
+            if (pending.isEmpty()) {
+                return;
+            }
+            Map<Long, Long> customerByLoan = resolveCustomers(pending);
+            List<CompletableFuture<?>> chunk = new ArrayList<>(pending.size());
+            for (PendingRow row : pending) {
+                Long customerId = customerByLoan.get(row.payment().loanId());
+                if (customerId == null) {
+                    row.result().complete(new PaymentBatchReport.RowResult(row.row(), row.payment().loanId(), false,
+                            "Loan not found"));
+                    continue;
+                }
+                CompletableFuture<?> previous = tailByCustomer.getOrDefault(customerId, CompletableFuture.completedFuture(null));
+                CompletableFuture<?> next = previous.thenRunAsync(
+                        () -> row.result().complete(apply(row.row(), row.payment())), workers);
+                tailByCustomer.put(customerId, next);
+                chunk.add(next);
+            }
+            pending.clear();
+            chunksInFlight.add(CompletableFuture.allOf(chunk.toArray(CompletableFuture[]::new)));
+            while (chunksInFlight.size() > CHUNKS_IN_FLIGHT) {
+                chunksInFlight.poll().join();
+            }
+        }
+    }
+
+    private record PendingRow(int row, PaymentInstruction payment, CompletableFuture<PaymentBatchReport.RowResult> result) {
+    }
+
+    @PreDestroy
+    void shutdown() {
+        workers.shutdown();
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.creditmodule.service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Fixed-point arithmetic for the installment payment waterfall.
+ * <p>
+ * Installment amounts are carried as {@code long} cents (scale 2). The early-payment discount and
+ * late-payment penalty are 0.1% of the installment per day, so an adjustment of a cent amount is
+ * always a whole number of 10<sup>-5</sup> units; every adjusted amount and total is therefore held
+ * exactly in those units ({@link #UNIT_SCALE}). No rounding happens anywhere in the waterfall, which
+ * is what makes its results identical to the {@link BigDecimal} arithmetic it replaces. The only
+ * rounding is when a payment with more than five decimals is converted to units: it is rounded
+ * down, which cannot change any {@code payment >= amount} comparison against a five-decimal amount.
+ * <p>
+ * All arithmetic uses {@code Math.*Exact}, so an overflow fails loudly instead of wrapping.
+ */
+public final class PaymentCalculator {
+
+    /** Scale of installment amounts. */
+    public static final int AMOUNT_SCALE = 2;
+
+    /** Scale of adjusted amounts, payments and totals. */
+    public static final int UNIT_SCALE = 5;
+
+    /** Number of 10^-5 units in one cent. */
+    private static final long UNITS_PER_CENT = 1_000;
+
+    private PaymentCalculator() {
+    }
+
+    /**
+     * Adjustment in 10^-5 units for paying an installment of {@code amountCents} on
+     * {@code paymentEpochDay} when it was due on {@code dueEpochDay}: a discount (negative) of 0.1% per
+     * day paid early or a penalty (positive) of 0.1% per day paid late.
+     */
+    public static long adjustmentUnits(long amountCents, long dueEpochDay, long paymentEpochDay) {
+        // amount * 0.001 * days == amountCents * 10^-2 * 10^-3 * days == amountCents * days units
+        return Math.multiplyExact(amountCents, paymentEpochDay - dueEpochDay);
+    }
+
+    /**
+     * Pays installments in order while the payment covers the adjusted amount, stopping at the first
+     * one it cannot cover. Fills {@code paidUnits} with the adjusted amount paid for each settled
+     * installment; entries past {@link Waterfall#paidCount()} are left untouched.
+     */
+    public static Waterfall waterfall(long[] amountCents, long[] dueEpochDays, int count,
+                                      long paymentUnits, long paymentEpochDay, long[] paidUnits) {
+        long remaining = paymentUnits;
+        int paidCount = 0;
+        long totalPaid = 0;
+        long totalDiscount = 0;
+        long totalPenalty = 0;
+        long totalPrincipalCents = 0;
+
+        for (int i = 0; i < count; i++) {
+            long adjustment = adjustmentUnits(amountCents[i], dueEpochDays[i], paymentEpochDay);
+            long adjusted = Math.addExact(Math.multiplyExact(amountCents[i], UNITS_PER_CENT), adjustment);
+            if (remaining < adjusted) {
+                break;
+            }
+            remaining -= adjusted;
+            totalPaid = Math.addExact(totalPaid, adjusted);
+            totalPrincipalCents = Math.addExact(totalPrincipalCents, amountCents[i]);
+            if (adjustment < 0) {
+                totalDiscount -= adjustment;
+            } else {
+                totalPenalty += adjustment;
+            }
+            paidUnits[i] = adjusted;
+            paidCount++;
+        }
+        return new Waterfall(paidCount, totalPaid, totalDiscount, totalPenalty, totalPrincipalCents);
+    }
+
+    /**
+     * Whether {@code amount} is a whole number of cents and therefore exact in this calculator.
+     */
+    public static boolean isWholeCents(BigDecimal amount) {
+        return amount.scale() <= AMOUNT_SCALE || amount.stripTrailingZeros().scale() <= AMOUNT_SCALE;
+    }
+
+    public static long toCents(BigDecimal amount) {
+        return amount.setScale(AMOUNT_SCALE, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+    }
+
+    public static long toUnits(BigDecimal payment) {
+        return payment.setScale(UNIT_SCALE, RoundingMode.FLOOR).unscaledValue().longValueExact();
+    }
+
+    /**
+     * Converts units back to a {@link BigDecimal} with at least two and at most five decimals.
+     */
+    public static BigDecimal fromUnits(long units) {
+        BigDecimal value = BigDecimal.valueOf(units, UNIT_SCALE).stripTrailingZeros();
+        return value.scale() < AMOUNT_SCALE ? value.setScale(AMOUNT_SCALE) : value;
+    }
+
+    public static BigDecimal fromCents(long cents) {
+        return BigDecimal.valueOf(cents, AMOUNT_SCALE);
+    }
+
+    /**
+     * Totals of one waterfall run; amounts are in 10^-5 units except the principal, which is in cents.
+     */
+    public record Waterfall(int paidCount,
+                            long totalPaidUnits,
+                            long totalDiscountUnits,
+                            long totalPenaltyUnits,
+                            long totalPrincipalCents) {
+    }
+}
@@ -0,0 +1,264 @@
+package com.example.creditmodule.service;
+
+import com.example.creditmodule.analytics.PortfolioAnalytics;
+import com.example.creditmodule.journal.PaymentEvent;
+import com.example.creditmodule.journal.PaymentJournal;
+import com.example.creditmodule.module.JournalCheckpoint;
+import com.example.creditmodule.module.Loan;
+import com.example.creditmodule.module.LoanInstallment;
+import com.example.creditmodule.repository.JournalCheckpointRepository;
+import com.example.creditmodule.repository.LoanInstallmentRepository;
+import com.example.creditmodule.repository.LoanRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Audit trail and recovery log of every loan payment, kept in the {@link PaymentJournal}.
+ * <p>
+ * A payment is accepted once its {@link PaymentEvent} is durable in the journal. The loan and
+ * installment rows it touches are the materialized state, written in the same transaction together with
+ * the {@link PaymentOutbox} row that later releases the customer's credit, and each loan remembers the
+ * last journal sequence applied to it. A periodic snapshot records the sequence up to which every
+ * journaled payment is known to be committed. On startup the journal is replayed from that snapshot, so
+ * a payment that was journaled but whose transaction never committed (a crash between the fsync and the
+ * commit) is applied then. Payments whose transaction rolled back are followed by an abort record and
+ * skipped.
+ * <p>
+ * The journal adds to the cost of a payment rather than replacing any of it: the rows are still updated
+ * on the payment path, since the next payment and every read depend on them, and {@link #record} waits
+ * for an fsync on top. Concurrent payments share that fsync, so the added latency is paid once per group,
+ * not once per payment; {@code PaymentJournalBenchmark} measures both.
+ * <p>
+ * For that reason the journal is off unless {@code credit.journal.enabled} is set. Without it there is
+ * no {@link PaymentJournal} bean, {@link #isEnabled} is false and payments do not call the ledger at all;
+ * nothing is snapshotted or replayed either.
+ */
+@Service
+public class PaymentLedger implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(PaymentLedger.class);
+
+    private final PaymentJournal journal;
+    private final JournalCheckpointRepository checkpointRepository;
+    private final LoanRepository loanRepository;
+    private final LoanInstallmentRepository installmentRepository;
+    private final PaymentOutbox paymentOutbox;
+    private final PortfolioAnalytics portfolioAnalytics;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+
+    // Sequences appended but not yet committed or rolled back; the snapshot may not pass the oldest
+    private final Object appendLock = new Object();
+    private final NavigableSet<Long> uncommitted = new ConcurrentSkipListSet<>();
+
+    public PaymentLedger(ObjectProvider<PaymentJournal> journal,
+                         JournalCheckpointRepository checkpointRepository,
+                         LoanRepository loanRepository,
+                         LoanInstallmentRepository installmentRepository,
+                         PaymentOutbox paymentOutbox,
+                         PortfolioAnalytics portfolioAnalytics,
+                         TransactionTemplate transactionTemplate,
+                         ObjectMapper objectMapper) {
+        this.journal = journal.getIfAvailable();
+        this.checkpointRepository = checkpointRepository;
+        this.loanRepository = loanRepository;
+        this.installmentRepository = installmentRepository;
+        this.paymentOutbox = paymentOutbox;
+        this.portfolioAnalytics = portfolioAnalytics;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+    }
+
+    public boolean isEnabled() {
+        return journal != null;
+    }
+
+    /**
+     * Journals a payment made in the current transaction and waits for it to be durable. The caller
+     * stores the returned sequence on the loan. If the transaction rolls back, an abort is journaled.
+     */
+    public long record(Loan loan, List<LoanInstallment> paidInstallments, LocalDate paymentDate,
+                       BigDecimal principalReleased) {
+        long sequence = append(loan, paidInstallments, paymentDate, principalReleased);
+        journal.awaitDurable(sequence);
+        return sequence;
+    }
+
+    /**
+     * Like {@link #record} without waiting for durability, so that several payments of one transaction
+     * share a single {@link #awaitDurable} before it commits.
+     */
+    long append(Loan loan, List<LoanInstallment> paidInstallments, LocalDate paymentDate,
+                BigDecimal principalReleased) {
+        List<PaymentEvent.PaidInstallment> paid = paidInstallments.stream()
+                .map(installment -> new PaymentEvent.PaidInstallment(installment.getId(), installment.getPaidAmount()))
+                .toList();
+        byte[] payload = serialize(PaymentEvent.payment(loan.getId(), loan.getCustomerId(), paymentDate, paid,
+                loan.getRemainingInstallments(), loan.isPaid(), principalReleased));
+
+        long sequence;
+        synchronized (appendLock) {
+            sequence = journal.append(payload);
+            uncommitted.add(sequence);
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                try {
+                    if (status != STATUS_COMMITTED) {
+                        journal.awaitDurable(journal.append(serialize(PaymentEvent.abort(sequence))));
+                    }
+                } finally {
+                    uncommitted.remove(sequence);
+                }
+            }
+        });
+        return sequence;
+    }
+
+    void awaitDurable(long sequence) {
+        journal.awaitDurable(sequence);
+    }
+
+    /**
+     * Moves this journal's checkpoint up to the newest sequence below every payment still in flight.
+     */
+    @Scheduled(fixedDelayString = "${credit.journal.snapshot-interval:60s}")
+    public void snapshot() {
+        if (!isEnabled()) {
+            return;
+        }
+        long snapshotSequence;
+        synchronized (appendLock) {
+            snapshotSequence = uncommitted.isEmpty() ? journal.lastSequence() : uncommitted.first() - 1;
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            JournalCheckpoint checkpoint = checkpointRepository.findById(journal.journalId()).orElseGet(this::newCheckpoint);
+            if (snapshotSequence > checkpoint.getSnapshotSequence()) {
+                checkpoint.setSnapshotSequence(snapshotSequence);
+                checkpoint.setUpdatedAt(LocalDateTime.now());
+                checkpointRepository.save(checkpoint);
+            }
+        });
+    }
+
+    /**
+     * Replays the journal from the last snapshot before the application takes traffic.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (!isEnabled()) {
+            return;
+        }
+        JournalCheckpoint checkpoint = checkpointRepository.findById(journal.journalId()).orElse(null);
+        if (checkpoint == null) {
+            // A journal this database has never seen: its history belongs elsewhere, start from its end
+            checkpoint = newCheckpoint();
+            checkpoint.setSnapshotSequence(journal.lastSequence());
+            checkpoint.setUpdatedAt(LocalDateTime.now());
+            checkpointRepository.save(checkpoint);
+            return;
+        }
+        long from = checkpoint.getSnapshotSequence();
+        int replayed = replay(from);
+        if (replayed > 0) {
+            log.info("Replayed {} journaled payments after sequence {}", replayed, from);
+        }
+        snapshot();
+    }
+
+    int replay(long afterSequence) {
+        List<Long> sequences = new ArrayList<>();
+        List<PaymentEvent> payments = new ArrayList<>();
+        Set<Long> aborted = new HashSet<>();
+        journal.replay(afterSequence, record -> {
+            PaymentEvent event = deserialize(record.payload());
+            if (event.type() == PaymentEvent.Type.ABORT) {
+                aborted.add(event.abortedSequence());
+            } else {
+                sequences.add(record.sequence());
+                payments.add(event);
+            }
+        });
+
+        int replayed = 0;
+        for (int i = 0; i < payments.size(); i++) {
+            long sequence = sequences.get(i);
+            PaymentEvent event = payments.get(i);
+            if (!aborted.contains(sequence)
+                    && Boolean.TRUE.equals(transactionTemplate.execute(status -> apply(sequence, event)))) {
+                replayed++;
+            }
+        }
+        return replayed;
+    }
+
+    private boolean apply(long sequence, PaymentEvent event) {
+        Loan loan = loanRepository.findById(event.loanId()).orElse(null);
+        if (loan == null || loan.getJournalSequence() >= sequence) {
+            return false;
+        }
+        List<LoanInstallment> newlyPaid = new ArrayList<>(event.installments().size());
+        for (PaymentEvent.PaidInstallment paid : event.installments()) {
+            installmentRepository.findById(paid.installmentId()).ifPresent(installment -> {
+                if (!installment.isPaid()) {
+                    newlyPaid.add(installment);
+                }
+                installment.setPaidAmount(paid.paidAmount());
+                installment.setPaymentDate(event.paymentDate());
+                installment.setPaid(true);
+            });
+        }
+        portfolioAnalytics.installmentsPaid(newlyPaid);
+        loan.setRemainingInstallments(event.remainingInstallments());
+        loan.setPaid(event.loanPaid());
+        loan.setJournalSequence(sequence);
+        paymentOutbox.creditReleased(event.customerId(), event.loanId(), event.principalReleased());
+        if (event.loanPaid()) {
+            paymentOutbox.loanPaidOff(event.customerId(), event.loanId());
+        }
+        return true;
+    }
+
+    private JournalCheckpoint newCheckpoint() {
+        JournalCheckpoint checkpoint = new JournalCheckpoint();
+        checkpoint.setJournalId(journal.journalId());
+        return checkpoint;
+    }
+
+    private byte[] serialize(PaymentEvent event) {
+        try {
+            return objectMapper.writeValueAsBytes(event);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private PaymentEvent deserialize(byte[] payload) {
+        try {
+            return objectMapper.readValue(payload, PaymentEvent.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
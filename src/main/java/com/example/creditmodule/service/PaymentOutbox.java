@@ -0,0 +1,181 @@
+package com.example.creditmodule.service;
+
+import com.example.creditmodule.module.LoanPaidOff;
+import com.example.creditmodule.module.OutboxEvent;
+import com.example.creditmodule.repository.OutboxEventRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Work that follows a payment but does not have to hold up its caller: giving the paid principal back
+ * to the customer's credit limit and announcing paid-off loans.
+ * <p>
+ * A payment only inserts outbox rows in its own transaction. After it commits, a single dispatcher
+ * thread is woken to drain the table in id order, a batch at a time; releases of the same customer in
+ * a batch become one update of the customer row, which payments would otherwise queue on. Every row is
+ * claimed by deleting it in the transaction that applies its effect, so each effect is applied exactly
+ * once, also with several dispatchers on one database. Rows left behind by a restart are picked up by
+ * the periodic poll, which is also the only trigger when {@code credit.outbox.dispatch-on-commit} is off.
+ */
+@Component
+public class PaymentOutbox {
+
+    private static final Logger log = LoggerFactory.getLogger(PaymentOutbox.class);
+
+    private static final String CLAIM = "delete from outbox_event where id = ?";
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final CreditReservationService creditReservationService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final boolean dispatchOnCommit;
+    private final ExecutorService dispatcher;
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    public PaymentOutbox(OutboxEventRepository outboxEventRepository,
+                         CreditReservationService creditReservationService,
+                         ApplicationEventPublisher eventPublisher,
+                         JdbcTemplate jdbcTemplate,
+                         TransactionTemplate transactionTemplate,
+                         @Value("${credit.outbox.batch-size:500}") int batchSize,
+                         @Value("${credit.outbox.dispatch-on-commit:true}") boolean dispatchOnCommit) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Outbox batch size must be positive");
+        }
+        this.outboxEventRepository = outboxEventRepository;
+        this.creditReservationService = creditReservationService;
+        this.eventPublisher = eventPublisher;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+        this.dispatchOnCommit = dispatchOnCommit;
+        this.dispatcher = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "payment-outbox");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Records in the current transaction that {@code amount} of principal goes back to the customer.
+     */
+    public void creditReleased(Long customerId, Long loanId, BigDecimal amount) {
+        enqueue(OutboxEvent.Type.CREDIT_RELEASED, customerId, loanId, amount);
+    }
+
+    /**
+     * Records in the current transaction that the loan has no unpaid installments left.
+     */
+    public void loanPaidOff(Long customerId, Long loanId) {
+        enqueue(OutboxEvent.Type.LOAN_PAID_OFF, customerId, loanId, null);
+    }
+
+    /**
+     * Drains the outbox on the calling thread and returns the number of events applied here.
+     */
+    public int dispatch() {
+        int applied = 0;
+        while (true) {
+            int[] batch = transactionTemplate.execute(status -> dispatchBatch());
+            applied += batch[1];
+            if (batch[0] < batchSize) {
+                return applied;
+            }
+        }
+    }
+
+    @Scheduled(cron = "${credit.outbox.poll-cron:*/5 * * * * *}")
+    public void poll() {
+        signal();
+    }
+
+    @PreDestroy
+    void close() {
+        dispatcher.shutdown();
+    }
+
+    private void enqueue(OutboxEvent.Type type, Long customerId, Long loanId, BigDecimal amount) {
+        OutboxEvent event = new OutboxEvent();
+        event.setType(type);
+        event.setCustomerId(customerId);
+        event.setLoanId(loanId);
+        event.setAmount(amount);
+        event.setCreatedAt(LocalDateTime.now());
+        outboxEventRepository.save(event);
+        if (dispatchOnCommit) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    signal();
+                }
+            });
+        }
+    }
+
+    // Coalesces wake-ups: at most one drain is queued behind the one running
+    private void signal() {
+        if (scheduled.compareAndSet(false, true)) {
+            dispatcher.execute(() -> {
+                scheduled.set(false);
+                try {
+                    dispatch();
+                } catch (RuntimeException e) {
+                    log.warn("Outbox dispatch failed, retrying on the next poll", e);
+                }
+            });
+        }
+    }
+
+    // Returns {rows read, rows applied}
+    private int[] dispatchBatch() {
+        List<OutboxEvent> batch = outboxEventRepository.findByOrderById(Limit.of(batchSize));
+        if (batch.isEmpty()) {
+            return new int[]{0, 0};
+        }
+        List<Object[]> ids = new ArrayList<>(batch.size());
+        for (OutboxEvent event : batch) {
+            ids.add(new Object[]{event.getId()});
+        }
+        int[] claimed = jdbcTemplate.batchUpdate(CLAIM, ids);
+
+        Map<Long, BigDecimal> releases = new LinkedHashMap<>();
+        List<LoanPaidOff> paidOff = new ArrayList<>();
+        int applied = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            if (claimed[i] != 1) {
+                continue;
+            }
+            OutboxEvent event = batch.get(i);
+            switch (event.getType()) {
+                case CREDIT_RELEASED -> releases.merge(event.getCustomerId(), event.getAmount(), BigDecimal::add);
+                case LOAN_PAID_OFF -> paidOff.add(new LoanPaidOff(event.getLoanId(), event.getCustomerId()));
+            }
+            applied++;
+        }
+        releases.forEach(creditReservationService::release);
+        paidOff.forEach(eventPublisher::publishEvent);
+        return new int[]{batch.size(), applied};
+    }
+}
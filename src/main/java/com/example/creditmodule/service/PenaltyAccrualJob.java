@@ -0,0 +1,196 @@
+package com.example.creditmodule.service;
+
+import com.example.creditmodule.module.AccrualCheckpoint;
+import com.example.creditmodule.module.LoanInstallment;
+import com.example.creditmodule.module.OverdueInstallment;
+import com.example.creditmodule.repository.AccrualCheckpointRepository;
+import com.example.creditmodule.repository.LoanInstallmentRepository;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManagerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Nightly accrual of late-payment penalties on unpaid overdue installments.
+ * <p>
+ * The book is scanned in keyset order by installment id, one chunk at a time. Each query walks the
+ * unpaid part of the {@code (is_paid, id, due_date)} index from the checkpoint and stops after a chunk,
+ * so its cost does not grow with how far the run has progressed. Penalties of a chunk are
+ * computed in parallel on a fork/join pool and written back with one JDBC batch in a short
+ * transaction that also advances the run's checkpoint; online payments only ever wait for one chunk.
+ * A restarted run resumes after the last committed chunk. The penalty is recomputed from the due date
+ * rather than incremented, so replaying a chunk is harmless.
+ * <p>
+ * The batch leaves the installment's {@code @Version} alone, so a payment that loaded an installment
+ * before its chunk was written still commits. Such a payment may write back the penalty it read, but it
+ * only writes installments it pays, and a paid installment accrues nothing; the {@code is_paid} guard
+ * keeps the batch off installments already paid.
+ */
+@Component
+public class PenaltyAccrualJob {
+
+    private static final Logger log = LoggerFactory.getLogger(PenaltyAccrualJob.class);
+
+    private static final String UPDATE_PENALTY =
+            "update loan_installment set accrued_penalty = ?, penalty_accrued_on = ? where id = ? and is_paid = false";
+
+    /** Installments per fork/join leaf task. */
+    private static final int LEAF_SIZE = 512;
+
+    private final LoanInstallmentRepository installmentRepository;
+    private final AccrualCheckpointRepository checkpointRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final EntityManagerFactory entityManagerFactory;
+    private final int chunkSize;
+    private final ForkJoinPool pool;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public PenaltyAccrualJob(LoanInstallmentRepository installmentRepository,
+                             AccrualCheckpointRepository checkpointRepository,
+                             JdbcTemplate jdbcTemplate,
+                             TransactionTemplate transactionTemplate,
+                             EntityManagerFactory entityManagerFactory,
+                             @Value("${credit.accrual.chunk-size:5000}") int chunkSize,
+                             @Value("${credit.accrual.parallelism:0}") int parallelism) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be positive");
+        }
+        this.installmentRepository = installmentRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.entityManagerFactory = entityManagerFactory;
+        this.chunkSize = chunkSize;
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    @Scheduled(cron = "${credit.accrual.cron:0 30 1 * * *}")
+    public void runNightly() {
+        run(LocalDate.now());
+    }
+
+    /**
+     * Accrues penalties as of {@code accrualDate}, resuming that date's run if it was interrupted.
+     *
+     * @return the checkpoint after the run, or {@code null} if a run was already in progress
+     */
+    public AccrualCheckpoint run(LocalDate accrualDate) {
+        if (!running.compareAndSet(false, true)) {
+            log.warn("Penalty accrual for {} skipped, a run is already in progress", accrualDate);
+            return null;
+        }
+        try {
+            AccrualCheckpoint checkpoint = checkpointRepository.findById(accrualDate).orElseGet(() -> {
+                AccrualCheckpoint fresh = new AccrualCheckpoint();
+                fresh.setAccrualDate(accrualDate);
+                return fresh;
+            });
+            if (checkpoint.isCompleted()) {
+                return checkpoint;
+            }
+            if (checkpoint.getLastInstallmentId() > 0) {
+                log.info("Resuming penalty accrual for {} after installment {}", accrualDate, checkpoint.getLastInstallmentId());
+            }
+
+            List<OverdueInstallment> chunk;
+            while (!(chunk = installmentRepository.findOverdueAfter(
+                    checkpoint.getLastInstallmentId(), accrualDate, Limit.of(chunkSize))).isEmpty()) {
+                BigDecimal[] penalties = new BigDecimal[chunk.size()];
+                pool.invoke(new PenaltyTask(chunk, penalties, accrualDate, 0, chunk.size()));
+                checkpoint = writeChunk(checkpoint, chunk, penalties, accrualDate);
+            }
+
+            checkpoint.setCompleted(true);
+            checkpoint.setUpdatedAt(LocalDateTime.now());
+            checkpoint = checkpointRepository.save(checkpoint);
+            log.info("Penalty accrual for {} completed, {} installments", accrualDate, checkpoint.getProcessedInstallments());
+            return checkpoint;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private AccrualCheckpoint writeChunk(AccrualCheckpoint checkpoint, List<OverdueInstallment> chunk,
+                                         BigDecimal[] penalties, LocalDate accrualDate) {
+        Date accruedOn = Date.valueOf(accrualDate);
+        List<Object[]> batch = new ArrayList<>(chunk.size());
+        for (int i = 0; i < chunk.size(); i++) {
+            batch.add(new Object[]{penalties[i], accruedOn, chunk.get(i).id()});
+        }
+        checkpoint.setLastInstallmentId(chunk.get(chunk.size() - 1).id());
+        checkpoint.setProcessedInstallments(checkpoint.getProcessedInstallments() + chunk.size());
+        checkpoint.setUpdatedAt(LocalDateTime.now());
+        AccrualCheckpoint saved = transactionTemplate.execute(status -> {
+            jdbcTemplate.batchUpdate(UPDATE_PENALTY, batch);
+            return checkpointRepository.save(checkpoint);
+        });
+        // The batch bypasses Hibernate, so cached copies of these installments still hold the old penalty
+        Cache cache = entityManagerFactory.getCache();
+        for (OverdueInstallment installment : chunk) {
+            cache.evict(LoanInstallment.class, installment.id());
+        }
+        return saved;
+    }
+
+    static BigDecimal penalty(OverdueInstallment installment, LocalDate accrualDate) {
+        if (PaymentCalculator.isWholeCents(installment.amount())) {
+            long units = PaymentCalculator.adjustmentUnits(PaymentCalculator.toCents(installment.amount()),
+                    installment.dueDate().toEpochDay(), accrualDate.toEpochDay());
+            return BigDecimal.valueOf(units, PaymentCalculator.UNIT_SCALE);
+        }
+        long daysLate = accrualDate.toEpochDay() - installment.dueDate().toEpochDay();
+        return installment.amount().multiply(BigDecimal.valueOf(0.001)).multiply(BigDecimal.valueOf(daysLate));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        pool.shutdown();
+    }
+
+    private static final class PenaltyTask extends RecursiveAction {
+        private final List<OverdueInstallment> installments;
+        private final BigDecimal[] penalties;
+        private final LocalDate accrualDate;
+        private final int from;
+        private final int to;
+
+        PenaltyTask(List<OverdueInstallment> installments, BigDecimal[] penalties, LocalDate accrualDate, int from, int to) {
+            this.installments = installments;
+            this.penalties = penalties;
+            this.accrualDate = accrualDate;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= LEAF_SIZE) {
+                for (int i = from; i < to; i++) {
+                    penalties[i] = penalty(installments.get(i), accrualDate);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new PenaltyTask(installments, penalties, accrualDate, from, middle),
+                    new PenaltyTask(installments, penalties, accrualDate, middle, to));
+        }
+    }
+}
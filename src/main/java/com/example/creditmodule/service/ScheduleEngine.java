@@ -0,0 +1,89 @@
+package com.example.creditmodule.service;
+
+import com.example.creditmodule.cache.BoundedCache;
+import com.example.creditmodule.module.LoanQuote;
+import com.example.creditmodule.module.ScheduledInstallment;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds equal-installment repayment schedules.
+ * <p>
+ * The loan total is rounded to cents once; every installment gets the floor of an equal share and
+ * the last installment also carries the remainder, so the schedule always sums to the total exactly.
+ * The amount-independent part of a schedule (the total factor and the due dates) is memoized per
+ * (installment count, interest rate, first due month), so repeated quotes only do a few long
+ * divisions.
+ */
+@Component
+public class ScheduleEngine {
+
+    private final BoundedCache<TemplateKey, Template> templates;
+
+    public ScheduleEngine(@Value("${credit.schedule.template-cache-size:1024}") int templateCacheSize) {
+        this.templates = new BoundedCache<>(templateCacheSize);
+    }
+
+    public BigDecimal totalAmount(BigDecimal amount, BigDecimal interestRate) {
+        return amount.multiply(BigDecimal.ONE.add(interestRate)).setScale(PaymentCalculator.AMOUNT_SCALE, RoundingMode.HALF_UP);
+    }
+
+    public LoanQuote quote(BigDecimal amount, BigDecimal interestRate, int installments, LocalDate today) {
+        Template template = template(interestRate, installments, today);
+        BigDecimal totalAmount = amount.multiply(template.totalFactor())
+                .setScale(PaymentCalculator.AMOUNT_SCALE, RoundingMode.HALF_UP);
+        return new LoanQuote(amount, interestRate, totalAmount, installments, split(totalAmount, template));
+    }
+
+    /**
+     * Splits an already computed total into {@code installments} monthly amounts, due on the first of
+     * each month starting next month.
+     */
+    public List<ScheduledInstallment> schedule(BigDecimal totalAmount, BigDecimal interestRate, int installments, LocalDate today) {
+        return split(totalAmount, template(interestRate, installments, today));
+    }
+
+    private List<ScheduledInstallment> split(BigDecimal totalAmount, Template template) {
+        int installments = template.dueDates().length;
+        long totalCents = PaymentCalculator.toCents(totalAmount.setScale(PaymentCalculator.AMOUNT_SCALE, RoundingMode.HALF_UP));
+        long baseCents = totalCents / installments;
+        long lastCents = totalCents - baseCents * (installments - 1);
+
+        BigDecimal base = PaymentCalculator.fromCents(baseCents);
+        List<ScheduledInstallment> schedule = new ArrayList<>(installments);
+        for (int i = 0; i < installments; i++) {
+            BigDecimal amount = i == installments - 1 ? PaymentCalculator.fromCents(lastCents) : base;
+            schedule.add(new ScheduledInstallment(i + 1, template.dueDates()[i], amount));
+        }
+        return schedule;
+    }
+
+    BoundedCache<?, ?> templateCache() {
+        return templates;
+    }
+
+    private Template template(BigDecimal interestRate, int installments, LocalDate today) {
+        YearMonth firstDueMonth = YearMonth.from(today).plusMonths(1);
+        TemplateKey key = new TemplateKey(installments, interestRate.stripTrailingZeros(), firstDueMonth);
+        return templates.computeIfAbsent(key, k -> {
+            LocalDate[] dueDates = new LocalDate[k.installments()];
+            for (int i = 0; i < dueDates.length; i++) {
+                dueDates[i] = k.firstDueMonth().plusMonths(i).atDay(1);
+            }
+            return new Template(BigDecimal.ONE.add(k.interestRate()), dueDates);
+        });
+    }
+
+    private record TemplateKey(int installments, BigDecimal interestRate, YearMonth firstDueMonth) {
+    }
+
+    private record Template(BigDecimal totalFactor, LocalDate[] dueDates) {
+    }
+}
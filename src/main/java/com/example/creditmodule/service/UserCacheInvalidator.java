@@ -0,0 +1,74 @@
+package com.example.creditmodule.service;
+
+import com.example.creditmodule.module.User;
+import com.example.creditmodule.security.CachingAuthenticationProvider;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * JPA entity listener on {@link User} that drops the user's entries from {@link OwnershipCache} and
+ * from the verified-credential cache. The user row owns both the password and the user-to-customer
+ * link, so it is the only change that can move either. The caches are looked up lazily because
+ * listeners are created while the persistence unit that the caches depend on is still being built.
+ * <p>
+ * Entries are dropped once the change commits; dropping them earlier would let a concurrent request
+ * cache the old row again before the new one is visible. A rename drops the old username as well as
+ * the new one, so the old name stops resolving to the customer and its cached password stops working.
+ */
+@Component
+public class UserCacheInvalidator {
+
+    private final ObjectProvider<OwnershipCache> ownershipCache;
+    private final ObjectProvider<CachingAuthenticationProvider> authenticationProvider;
+
+    public UserCacheInvalidator(ObjectProvider<OwnershipCache> ownershipCache,
+                                ObjectProvider<CachingAuthenticationProvider> authenticationProvider) {
+        this.ownershipCache = ownershipCache;
+        this.authenticationProvider = authenticationProvider;
+    }
+
+    @PostLoad
+    public void userLoaded(User user) {
+        user.setStoredUsername(user.getUsername());
+    }
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void userChanged(User user) {
+        Set<String> usernames = new LinkedHashSet<>();
+        if (user.getStoredUsername() != null) {
+            usernames.add(user.getStoredUsername());
+        }
+        usernames.add(user.getUsername());
+        user.setStoredUsername(user.getUsername());
+        afterCommit(() -> usernames.forEach(this::evict));
+    }
+
+    private void evict(String username) {
+        ownershipCache.ifAvailable(cache -> cache.evictUser(username));
+        authenticationProvider.ifAvailable(provider -> provider.evict(username));
+    }
+
+    private static void afterCommit(Runnable eviction) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    eviction.run();
+                }
+            });
+        } else {
+            eviction.run();
+        }
+    }
+}
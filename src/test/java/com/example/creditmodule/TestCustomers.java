@@ -0,0 +1,27 @@
+package com.example.creditmodule;
+
+import com.example.creditmodule.module.Customer;
+import com.example.creditmodule.repository.CustomerRepository;
+
+import java.math.BigDecimal;
+
+/**
+ * Customers for tests and benchmarks that need one to lend to.
+ */
+public final class TestCustomers {
+
+    private TestCustomers() {
+    }
+
+    /**
+     * Saves a customer with {@code creditLimit} and nothing of it used yet.
+     */
+    public static Customer newCustomer(CustomerRepository customerRepository, long creditLimit) {
+        Customer customer = new Customer();
+        customer.setName("Test");
+        customer.setSurname("Customer");
+        customer.setCreditLimit(BigDecimal.valueOf(creditLimit));
+        customer.setUsedCreditLimit(BigDecimal.ZERO);
+        return customerRepository.save(customer);
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.creditmodule.analytics;
+
+import com.example.creditmodule.TestCustomers;
+import com.example.creditmodule.module.Customer;
+import com.example.creditmodule.module.Loan;
+import com.example.creditmodule.module.PortfolioRisk;
+import com.example.creditmodule.module.ScheduledInstallment;
+import com.example.creditmodule.repository.CustomerRepository;
+import com.example.creditmodule.service.LoanService;
+import com.example.creditmodule.service.PaymentOutbox;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.httpBasic;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class PortfolioAnalyticsTest {
+
+    private static final BigDecimal INSTALLMENT = BigDecimal.valueOf(110);
+
+    @Autowired
+    private PortfolioAnalytics portfolioAnalytics;
+
+    @Autowired
+    private LoanService loanService;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private PaymentOutbox paymentOutbox;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    private Customer newCustomer(long creditLimit) {
+        return TestCustomers.newCustomer(customerRepository, creditLimit);
+    }
+
+    private static void assertAmount(BigDecimal expected, BigDecimal actual) {
+        assertEquals(0, expected.compareTo(actual), "expected " + expected + " but was " + actual);
+    }
+
+    // 1200 at 0.1 over 12 months: 1320 of principal in installments of 110
+    private Long createLoan(Customer customer) {
+        loanService.createLoan(customer.getId(), BigDecimal.valueOf(1200), BigDecimal.valueOf(0.1), 12);
+        List<Long> loanIds = loanService.listLoans(customer.getId()).stream().map(Loan::getId).toList();
+        return loanIds.get(loanIds.size() - 1);
+    }
+
+    @Test
+    void createAndPay_moveTheFiguresWhenTheyCommit_andAgreeWithTheDatabase() {
+        Customer customer = newCustomer(100_000);
+        portfolioAnalytics.reconcile();
+        LocalDate today = LocalDate.now();
+        PortfolioRisk before = portfolioAnalytics.risk(today);
+
+        Long loanId = createLoan(customer);
+        PortfolioRisk created = portfolioAnalytics.risk(today);
+        assertAmount(before.outstandingExposure().add(BigDecimal.valueOf(1320)), created.outstandingExposure());
+        assertEquals(before.openInstallments() + 12, created.openInstallments());
+        assertAmount(before.usedCreditLimit().add(BigDecimal.valueOf(1320)), created.usedCreditLimit());
+
+        loanService.payLoan(loanId, INSTALLMENT);
+        paymentOutbox.dispatch();
+        PortfolioRisk paid = portfolioAnalytics.risk(today);
+        assertAmount(created.outstandingExposure().subtract(INSTALLMENT), paid.outstandingExposure());
+        assertEquals(created.openInstallments() - 1, paid.openInstallments());
+        assertAmount(created.usedCreditLimit().subtract(INSTALLMENT), paid.usedCreditLimit());
+
+        portfolioAnalytics.reconcile();
+        PortfolioRisk reconciled = portfolioAnalytics.risk(today);
+        assertAmount(paid.outstandingExposure(), reconciled.outstandingExposure());
+        assertEquals(paid.openInstallments(), reconciled.openInstallments());
+        assertAmount(paid.usedCreditLimit(), reconciled.usedCreditLimit());
+        assertAmount(paid.totalCreditLimit(), reconciled.totalCreditLimit());
+        assertNotNull(reconciled.reconciledAt());
+    }
+
+    @Test
+    void rejectedLoan_leavesTheFiguresAlone() {
+        Customer customer = newCustomer(100);
+        portfolioAnalytics.reconcile();
+        PortfolioRisk before = portfolioAnalytics.risk(LocalDate.now());
+
+        assertThrows(RuntimeException.class, () -> createLoan(customer));
+
+        PortfolioRisk after = portfolioAnalytics.risk(LocalDate.now());
+        assertAmount(before.outstandingExposure(), after.outstandingExposure());
+        assertAmount(before.usedCreditLimit(), after.usedCreditLimit());
+    }
+
+    @Test
+    void overdueInstallments_areAgedByDaysPastTheirDueDate() {
+        Customer customer = newCustomer(100_000);
+        List<ScheduledInstallment> schedule = loanService.quoteLoan(BigDecimal.valueOf(1200), BigDecimal.valueOf(0.1), 12)
+                .schedule();
+        // Ten days after the fourth due date, the first four installments are 10, ~40, ~70 and ~100 days overdue
+        LocalDate asOf = schedule.get(3).dueDate().plusDays(10);
+        PortfolioRisk before = portfolioAnalytics.risk(asOf);
+
+        createLoan(customer);
+
+        PortfolioRisk after = portfolioAnalytics.risk(asOf);
+        assertEquals(List.of("0-30", "31-60", "61-90", "90+"),
+                after.overdue().stream().map(PortfolioRisk.AgingBucket::range).toList());
+        for (int i = 0; i < 4; i++) {
+            PortfolioRisk.AgingBucket bucket = after.overdue().get(i);
+            assertEquals(before.overdue().get(i).installments() + 1, bucket.installments(), bucket.range());
+            assertAmount(before.overdue().get(i).amount().add(INSTALLMENT), bucket.amount());
+        }
+    }
+
+    @Test
+    void reconcile_picksUpWritesMadeAroundTheService() {
+        Customer customer = newCustomer(5_000);
+        portfolioAnalytics.reconcile();
+        PortfolioRisk before = portfolioAnalytics.risk(LocalDate.now());
+
+        jdbcTemplate.update("update customer set credit_limit = credit_limit + 1000 where id = ?", customer.getId());
+        portfolioAnalytics.reconcile();
+
+        PortfolioRisk after = portfolioAnalytics.risk(LocalDate.now());
+        assertAmount(before.totalCreditLimit().add(BigDecimal.valueOf(1000)), after.totalCreditLimit());
+        assertEquals(0, after.usedCreditLimit().divide(after.totalCreditLimit(), 4, RoundingMode.HALF_UP)
+                .compareTo(after.utilization()));
+    }
+
+    @Test
+    void riskEndpoint_isAdminOnly() throws Exception {
+        mockMvc.perform(get("/api/portfolio/risk").with(httpBasic("admin", "adminpass")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.overdue.length()").value(4));
+        mockMvc.perform(get("/api/portfolio/risk").with(httpBasic("customer", "customerpass")))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(get("/api/portfolio/risk"))
+                .andExpect(status().isUnauthorized());
+    }
+}
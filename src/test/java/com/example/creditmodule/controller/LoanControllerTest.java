@@ -1,25 +1,54 @@
 package com.example.creditmodule.controller;
 
+import com.example.creditmodule.module.CustomerPayment;
+import com.example.creditmodule.module.KeysetPage;
+import com.example.creditmodule.module.Loan;
+import com.example.creditmodule.module.LoanQuote;
+import com.example.creditmodule.module.ScheduledInstallment;
+import com.example.creditmodule.service.BulkLoanService;
+import com.example.creditmodule.service.IdempotentPaymentService;
+import com.example.creditmodule.service.LoanListingService;
 import com.example.creditmodule.service.LoanService;
+import com.example.creditmodule.service.LoanStreamReader;
+import com.example.creditmodule.service.PaymentBatchService;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import reactor.core.publisher.Flux;
 
+import java.io.OutputStream;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
 import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 class LoanControllerTest {
 
     private final LoanService loanService = Mockito.mock(LoanService.class);
-    private final LoanController loanController = new LoanController(loanService);
+    private final BulkLoanService bulkLoanService = Mockito.mock(BulkLoanService.class);
+    private final PaymentBatchService paymentBatchService = Mockito.mock(PaymentBatchService.class);
+    private final LoanStreamReader loanStreamReader = Mockito.mock(LoanStreamReader.class);
+    private final LoanListingService loanListingService = Mockito.mock(LoanListingService.class);
+    private final IdempotentPaymentService idempotentPaymentService = Mockito.mock(IdempotentPaymentService.class);
+    private final LoanController loanController = new LoanController(loanService, bulkLoanService,
+            paymentBatchService, loanStreamReader, loanListingService, idempotentPaymentService);
     private final MockMvc mockMvc = MockMvcBuilders.standaloneSetup(loanController).build();
 
     @Test
@@ -35,6 +64,41 @@ class LoanControllerTest {
                 .andExpect(content().string("Loan created successfully"));
     }
 
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void bulkCreateLoans_shouldStreamResults() throws Exception {
+        Mockito.doAnswer(invocation -> {
+            OutputStream output = invocation.getArgument(2);
+            output.write("{\"row\":1,\"success\":true}\n".getBytes(StandardCharsets.UTF_8));
+            return null;
+        }).when(bulkLoanService).originate(any(), eq(BulkLoanService.Format.CSV), any());
+
+        MvcResult result = mockMvc.perform(post("/api/loans/bulk-create")
+                        .content("customerId,amount,interestRate,installments\n1,1000,0.2,12\n")
+                        .contentType("text/csv"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().string("{\"row\":1,\"success\":true}\n"));
+    }
+
+    @Test
+    @WithMockUser(roles = "CUSTOMER")
+    void quoteLoan_shouldReturnSchedule() throws Exception {
+        LoanQuote quote = new LoanQuote(BigDecimal.valueOf(1000), BigDecimal.valueOf(0.1), new BigDecimal("1100.00"), 6,
+                List.of(new ScheduledInstallment(1, LocalDate.of(2025, 1, 1), new BigDecimal("183.33"))));
+        Mockito.when(loanService.quoteLoan(BigDecimal.valueOf(1000), BigDecimal.valueOf(0.1), 6)).thenReturn(quote);
+
+        mockMvc.perform(get("/api/loans/quote")
+                        .param("amount", "1000")
+                        .param("interestRate", "0.1")
+                        .param("installments", "6"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"totalAmount\":1100.00,\"schedule\":[{\"number\":1,\"amount\":183.33}]}"));
+    }
+
     @Test
     @WithMockUser(roles = "ADMIN")
     void listLoans_shouldReturnLoans() throws Exception {
@@ -47,6 +111,47 @@ class LoanControllerTest {
                 .andExpect(content().json("[]"));
     }
 
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void streamLoans_shouldWriteOneLoanPerLine() throws Exception {
+        Loan first = new Loan();
+        first.setId(1L);
+        Loan second = new Loan();
+        second.setId(2L);
+        Mockito.when(loanStreamReader.streamLoans(1L)).thenReturn(Flux.just(first, second));
+
+        MvcResult result = mockMvc.perform(get("/api/loans/list/stream")
+                        .param("customerId", "1")
+                        .accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        List<String> lines = body.lines().toList();
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(0).contains("\"id\":1"));
+        assertTrue(lines.get(1).contains("\"id\":2"));
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void pageLoans_shouldReturnItemsAndCursor() throws Exception {
+        Loan loan = new Loan();
+        loan.setId(7L);
+        Mockito.when(loanListingService.loanPage(1L, false, 3L, 1))
+                .thenReturn(new KeysetPage<>(List.of(loan), 7L));
+
+        mockMvc.perform(get("/api/loans/page")
+                        .param("customerId", "1")
+                        .param("paid", "false")
+                        .param("after", "3")
+                        .param("size", "1"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"items\":[{\"id\":7}],\"nextCursor\":7}"));
+    }
+
     @Test
     @WithMockUser(roles = "ADMIN")
     void listInstallments_shouldReturnInstallments() throws Exception {
@@ -68,4 +173,37 @@ class LoanControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(content().string("Paid 1 installments"));
     }
-}
\ No newline at end of file
+
+    @Test
+    @WithMockUser(roles = "CUSTOMER")
+    void payLoan_withIdempotencyKey_shouldGoThroughIdempotentPath() throws Exception {
+        Mockito.when(idempotentPaymentService.payLoan("retry-1", 1L, BigDecimal.valueOf(1000)))
+                .thenReturn("Paid 1 installments");
+
+        mockMvc.perform(post("/api/loans/pay")
+                        .header("Idempotency-Key", "retry-1")
+                        .param("loanId", "1")
+                        .param("paymentAmount", "1000"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("Paid 1 installments"));
+        Mockito.verifyNoInteractions(loanService);
+    }
+
+    @Test
+    @WithMockUser(roles = "CUSTOMER")
+    void payCustomer_shouldPassThePolicy() throws Exception {
+        Mockito.when(loanService.payCustomer(1L, BigDecimal.valueOf(500), CustomerPayment.Policy.HIGHEST_PENALTY_FIRST))
+                .thenReturn(new CustomerPayment(1L, CustomerPayment.Policy.HIGHEST_PENALTY_FIRST, 1,
+                        BigDecimal.valueOf(101), BigDecimal.ZERO, BigDecimal.ONE, BigDecimal.valueOf(399),
+                        List.of(new CustomerPayment.LoanAllocation(7L, 1, BigDecimal.valueOf(101), false))));
+
+        String body = mockMvc.perform(post("/api/loans/pay-customer")
+                        .param("customerId", "1")
+                        .param("paymentAmount", "500")
+                        .param("policy", "HIGHEST_PENALTY_FIRST"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        assertTrue(body.contains("\"loanId\":7"), body);
+        assertTrue(body.contains("\"unallocated\":399"), body);
+    }
+}
@@ -0,0 +1,174 @@
+package com.example.creditmodule.journal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PaymentJournalTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recordsSurviveSegmentRollsAndReopening() throws IOException {
+        PaymentJournal journal = new PaymentJournal(directory, 4096);
+        String journalId = journal.journalId();
+        for (int i = 1; i <= 200; i++) {
+            assertEquals(i, journal.append(payload(i)));
+        }
+        journal.awaitDurable(200);
+        journal.close();
+        assertTrue(segmentCount() > 1, "200 records should not fit in one 4 KiB segment");
+
+        PaymentJournal reopened = new PaymentJournal(directory, 4096);
+        assertEquals(journalId, reopened.journalId());
+        assertEquals(200, reopened.lastSequence());
+        assertEquals(201, reopened.append(payload(201)));
+
+        List<String> replayed = new ArrayList<>();
+        reopened.replay(150, record -> replayed.add(new String(record.payload(), StandardCharsets.UTF_8)));
+        assertEquals(51, replayed.size());
+        assertEquals("payment-151", replayed.get(0));
+        assertEquals("payment-201", replayed.get(50));
+        reopened.close();
+    }
+
+    @Test
+    void tornTailIsDroppedAndOverwritten() throws IOException {
+        PaymentJournal journal = new PaymentJournal(directory, 4096);
+        journal.append(payload(1));
+        journal.append(payload(2));
+        journal.close();
+
+        // Flip a byte inside the second record's payload, as a crash mid-write would leave it
+        Path segment = segments().get(0);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE, StandardOpenOption.READ)) {
+            int secondPayload = 16 + payload(1).length + 16;
+            channel.write(ByteBuffer.wrap(new byte[]{'X'}), secondPayload);
+        }
+
+        PaymentJournal reopened = new PaymentJournal(directory, 4096);
+        assertEquals(1, reopened.lastSequence());
+        assertEquals(2, reopened.append(payload(3)));
+        List<String> replayed = new ArrayList<>();
+        reopened.replay(0, record -> replayed.add(new String(record.payload(), StandardCharsets.UTF_8)));
+        assertEquals(List.of("payment-1", "payment-3"), replayed);
+        reopened.close();
+    }
+
+    @Test
+    void concurrentAppendersAllBecomeDurable() throws Exception {
+        PaymentJournal journal = new PaymentJournal(directory, 1 << 20);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Long>> appends = new ArrayList<>();
+            for (int i = 0; i < 400; i++) {
+                int n = i;
+                appends.add(executor.submit(() -> {
+                    long sequence = journal.append(payload(n));
+                    journal.awaitDurable(sequence);
+                    return sequence;
+                }));
+            }
+            for (Future<Long> append : appends) {
+                append.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(400, journal.lastSequence());
+        journal.close();
+    }
+
+    @Test
+    void rolledSegmentsAreUnmapped() throws IOException {
+        long mappedBefore = mappedBuffers();
+        PaymentJournal journal = new PaymentJournal(directory, 4096);
+        // 216-byte records, 18 to a segment (4 bytes stay free for the end marker): 200 records fill 12 segments
+        byte[] payload = new byte[200];
+        for (int i = 1; i <= 200; i++) {
+            journal.append(payload);
+        }
+        assertEquals(12, segmentCount());
+        assertEquals(mappedBefore + 1, mappedBuffers(), "only the active segment should stay mapped");
+
+        journal.replay(0, record -> { });
+        assertEquals(mappedBefore + 1, mappedBuffers(), "replay should not keep the segments it read mapped");
+        journal.close();
+        assertEquals(mappedBefore, mappedBuffers());
+    }
+
+    @Test
+    void concurrentAppendersAcrossSegmentRollsAllBecomeDurable() throws Exception {
+        PaymentJournal journal = new PaymentJournal(directory, 4096);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Long>> appends = new ArrayList<>();
+            for (int i = 0; i < 2000; i++) {
+                int n = i;
+                appends.add(executor.submit(() -> {
+                    long sequence = journal.append(payload(n));
+                    journal.awaitDurable(sequence);
+                    return sequence;
+                }));
+            }
+            for (Future<Long> append : appends) {
+                append.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        journal.close();
+
+        PaymentJournal reopened = new PaymentJournal(directory, 4096);
+        assertEquals(2000, reopened.lastSequence());
+        reopened.close();
+    }
+
+    @Test
+    void directoryCannotBeOpenedTwice() throws IOException {
+        PaymentJournal journal = new PaymentJournal(directory, 4096);
+        assertThrows(IllegalStateException.class, () -> new PaymentJournal(directory, 4096));
+        journal.close();
+    }
+
+    private static byte[] payload(int n) {
+        return ("payment-" + n).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static long mappedBuffers() {
+        return ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class).stream()
+                .filter(pool -> pool.getName().equals("mapped"))
+                .mapToLong(BufferPoolMXBean::getCount)
+                .sum();
+    }
+
+    private long segmentCount() {
+        return segments().size();
+    }
+
+    private List<Path> segments() {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.toString().endsWith(".log")).sorted().toList();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
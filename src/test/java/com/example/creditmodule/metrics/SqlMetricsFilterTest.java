@@ -0,0 +1,93 @@
+package com.example.creditmodule.metrics;
+
+import com.example.creditmodule.repository.UserRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.system.CapturedOutput;
+import org.springframework.boot.test.system.OutputCaptureExtension;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.httpBasic;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "credit.metrics.slow-request-threshold=0ms")
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+@ExtendWith(OutputCaptureExtension.class)
+class SqlMetricsFilterTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private String customerId() {
+        return userRepository.findByUsername("customer").orElseThrow().getCustomer().getId().toString();
+    }
+
+    @Test
+    void statementsAndEntityLoadsAreRecordedPerEndpoint() throws Exception {
+        String customerId = customerId();
+        mockMvc.perform(get("/api/loans/list").param("customerId", customerId)
+                        .with(httpBasic("admin", "adminpass")))
+                .andExpect(status().isOk());
+
+        DistributionSummary statements = meterRegistry.find("credit.http.sql.statements")
+                .tag("uri", "/api/loans/list").tag("method", "GET").summary();
+        assertNotNull(statements);
+        assertTrue(statements.count() >= 1);
+        assertTrue(statements.totalAmount() >= 1);
+        assertNotNull(meterRegistry.find("credit.http.entities.loaded").tag("uri", "/api/loans/list").summary());
+
+        Timer listLoans = meterRegistry.find("credit.loan.service").tag("method", "listLoans").timer();
+        assertNotNull(listLoans);
+        assertTrue(listLoans.count() >= 1);
+    }
+
+    @Test
+    void slowRequestsLogTheirStatementBreakdown(CapturedOutput output) throws Exception {
+        // A cached result would leave nothing to break down
+        entityManagerFactory.unwrap(SessionFactory.class).getCache().evictAllRegions();
+        mockMvc.perform(get("/api/loans/list").param("customerId", customerId())
+                        .with(httpBasic("admin", "adminpass")))
+                .andExpect(status().isOk());
+
+        assertTrue(output.getOut().contains("Slow request GET /api/loans/list"));
+        assertTrue(output.getOut().contains("from loan"));
+    }
+
+    @Test
+    void metricsAreExposedForPrometheusToAdminsOnly() throws Exception {
+        mockMvc.perform(get("/api/loans/list").param("customerId", customerId())
+                        .with(httpBasic("admin", "adminpass")))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/actuator/prometheus").with(httpBasic("admin", "adminpass")))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("credit_http_sql_statements")))
+                .andExpect(content().string(containsString("credit_loan_service_seconds")))
+                .andExpect(content().string(containsString("spring_data_repository_invocations_seconds")));
+        mockMvc.perform(get("/actuator/prometheus").with(httpBasic("customer", "customerpass")))
+                .andExpect(status().isForbidden());
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.creditmodule.security;
+
+import com.example.creditmodule.module.User;
+import com.example.creditmodule.repository.UserRepository;
+import com.example.creditmodule.service.CustomUserDetailsService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.httpBasic;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class CachingAuthenticationProviderTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private CachingAuthenticationProvider authenticationProvider;
+
+    @MockitoSpyBean
+    private CustomUserDetailsService userDetailsService;
+
+    private Long customerId;
+
+    @BeforeEach
+    void setUp() {
+        authenticationProvider.cache().invalidateAll();
+        customerId = userRepository.findByUsername("customer").orElseThrow().getCustomer().getId();
+        clearInvocations(userDetailsService);
+    }
+
+    @Test
+    void repeatedBasicRequestsVerifyThePasswordOnce() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            mockMvc.perform(get("/api/loans/list").param("customerId", customerId.toString())
+                            .with(httpBasic("customer", "customerpass")))
+                    .andExpect(status().isOk());
+        }
+
+        verify(userDetailsService, times(1)).loadUserByUsername("customer");
+    }
+
+    @Test
+    void wrongPasswordIsRejectedEvenWhenCached() throws Exception {
+        mockMvc.perform(get("/api/loans/list").param("customerId", customerId.toString())
+                        .with(httpBasic("customer", "customerpass")))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/api/loans/list").param("customerId", customerId.toString())
+                        .with(httpBasic("customer", "guess")))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void roleChecksStillApplyToCachedCredentials() throws Exception {
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(get("/api/loans/list").param("customerId", String.valueOf(customerId + 1))
+                            .with(httpBasic("customer", "customerpass")))
+                    .andExpect(status().isForbidden());
+            mockMvc.perform(get("/api/loans/list").param("customerId", customerId.toString())
+                            .with(httpBasic("admin", "adminpass")))
+                    .andExpect(status().isOk());
+        }
+    }
+
+    @Test
+    void passwordChangeEvictsTheCachedCredential() throws Exception {
+        User user = new User();
+        user.setUsername("rotating");
+        user.setPassword(passwordEncoder.encode("old"));
+        user.setRole("ADMIN");
+        user = userRepository.save(user);
+        mockMvc.perform(get("/api/loans/list").param("customerId", customerId.toString())
+                        .with(httpBasic("rotating", "old")))
+                .andExpect(status().isOk());
+
+        user.setPassword(passwordEncoder.encode("new"));
+        userRepository.save(user);
+
+        mockMvc.perform(get("/api/loans/list").param("customerId", customerId.toString())
+                        .with(httpBasic("rotating", "old")))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(get("/api/loans/list").param("customerId", customerId.toString())
+                        .with(httpBasic("rotating", "new")))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void renameEvictsTheCachedCredentialOfTheOldName() throws Exception {
+        User user = new User();
+        user.setUsername("before-rename");
+        user.setPassword(passwordEncoder.encode("secret"));
+        user.setRole("ADMIN");
+        user = userRepository.save(user);
+        mockMvc.perform(get("/api/loans/list").param("customerId", customerId.toString())
+                        .with(httpBasic("before-rename", "secret")))
+                .andExpect(status().isOk());
+
+        user.setUsername("after-rename");
+        userRepository.save(user);
+
+        mockMvc.perform(get("/api/loans/list").param("customerId", customerId.toString())
+                        .with(httpBasic("before-rename", "secret")))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(get("/api/loans/list").param("customerId", customerId.toString())
+                        .with(httpBasic("after-rename", "secret")))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void entriesExpireAfterTheTimeToLive() {
+        AuthenticationProvider delegate = mock(AuthenticationProvider.class);
+        when(delegate.authenticate(any())).thenAnswer(invocation -> UsernamePasswordAuthenticationToken.authenticated(
+                "user", null, AuthorityUtils.createAuthorityList("ROLE_CUSTOMER")));
+        AtomicLong now = new AtomicLong();
+        CachingAuthenticationProvider provider =
+                new CachingAuthenticationProvider(delegate, 10, Duration.ofMinutes(5), now::get);
+        Authentication request = UsernamePasswordAuthenticationToken.unauthenticated("user", "secret");
+
+        provider.authenticate(request);
+        now.addAndGet(Duration.ofMinutes(4).toNanos());
+        Authentication cached = provider.authenticate(request);
+        now.addAndGet(Duration.ofMinutes(2).toNanos());
+        provider.authenticate(request);
+
+        assertTrue(cached.isAuthenticated());
+        assertNull(cached.getCredentials());
+        verify(delegate, times(2)).authenticate(any());
+    }
+
+    @Test
+    void failedAuthenticationIsNotCached() {
+        AuthenticationProvider delegate = mock(AuthenticationProvider.class);
+        when(delegate.authenticate(any())).thenThrow(new BadCredentialsException("Bad credentials"));
+        CachingAuthenticationProvider provider = new CachingAuthenticationProvider(delegate, 10, Duration.ofMinutes(5));
+        Authentication request = UsernamePasswordAuthenticationToken.unauthenticated("user", "secret");
+
+        assertThrows(BadCredentialsException.class, () -> provider.authenticate(request));
+        assertThrows(BadCredentialsException.class, () -> provider.authenticate(request));
+        assertEquals(0, provider.cache().size());
+        verify(delegate, times(2)).authenticate(any());
+    }
+}
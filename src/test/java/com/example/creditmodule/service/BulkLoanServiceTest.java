@@ -0,0 +1,102 @@
+package com.example.creditmodule.service;
+
+import com.example.creditmodule.TestCustomers;
+import com.example.creditmodule.module.BulkLoanResult;
+import com.example.creditmodule.module.Customer;
+import com.example.creditmodule.repository.CustomerRepository;
+import com.example.creditmodule.repository.LoanRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class BulkLoanServiceTest {
+
+    @Autowired
+    private LoanService loanService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    private Customer newCustomer(long creditLimit) {
+        return TestCustomers.newCustomer(customerRepository, creditLimit);
+    }
+
+    private List<BulkLoanResult> run(String body, BulkLoanService.Format format) throws Exception {
+        BulkLoanService service = new BulkLoanService(loanService, transactionTemplate, entityManager, objectMapper, 2);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        service.originate(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), format, output);
+
+        List<BulkLoanResult> results = new ArrayList<>();
+        for (String line : output.toString(StandardCharsets.UTF_8).split("\n")) {
+            results.add(objectMapper.readValue(line, BulkLoanResult.class));
+        }
+        return results;
+    }
+
+    @Test
+    void originate_shouldReportEachCsvRowAndApplyCreditAcrossChunks() throws Exception {
+        Customer customer = newCustomer(3000);
+        long id = customer.getId();
+
+        List<BulkLoanResult> results = run("""
+                customerId,amount,interestRate,installments
+                %d,1000,0.2,12
+                %d,1000,0.9,12
+                %d,1000,0.2,6
+                %d,1000,0.2,6
+                not,a,valid,row
+                """.formatted(id, id, id, id), BulkLoanService.Format.CSV);
+
+        assertEquals(5, results.size());
+        assertTrue(results.get(0).success());
+        assertEquals("Interest rate must be between 0.1 and 0.5", results.get(1).message());
+        assertTrue(results.get(2).success());
+        // the third loan would exceed the limit once the first two chunks have been applied
+        assertEquals("Insufficient credit limit", results.get(3).message());
+        assertFalse(results.get(4).success());
+        assertEquals(5, results.get(4).row());
+
+        assertEquals(2, loanRepository.findByCustomerId(id).size());
+        assertEquals(0, BigDecimal.valueOf(2400).compareTo(customerRepository.findById(id).orElseThrow().getUsedCreditLimit()));
+    }
+
+    @Test
+    void originate_shouldAcceptNdjson() throws Exception {
+        Customer customer = newCustomer(50000);
+
+        List<BulkLoanResult> results = run("""
+                {"customerId":%d,"amount":1000,"interestRate":0.1,"installments":9}
+                {"customerId":%d,"amount":2000,"interestRate":0.1}
+                """.formatted(customer.getId(), customer.getId()), BulkLoanService.Format.NDJSON);
+
+        assertEquals(2, results.size());
+        assertTrue(results.get(0).success());
+        assertNotNull(results.get(0).loanId());
+        assertFalse(results.get(1).success());
+    }
+}
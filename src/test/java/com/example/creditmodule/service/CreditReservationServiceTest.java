@@ -0,0 +1,145 @@
+package com.example.creditmodule.service;
+
+import com.example.creditmodule.TestCustomers;
+import com.example.creditmodule.module.Customer;
+import com.example.creditmodule.module.Loan;
+import com.example.creditmodule.repository.CustomerRepository;
+import com.example.creditmodule.repository.LoanRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class CreditReservationServiceTest {
+
+    private static final int THREADS = 16;
+
+    @Autowired
+    private CreditReservationService creditReservationService;
+
+    @Autowired
+    private LoanService loanService;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private Customer newCustomer(long creditLimit) {
+        return TestCustomers.newCustomer(customerRepository, creditLimit);
+    }
+
+    private BigDecimal usedCredit(Customer customer) {
+        return customerRepository.findById(customer.getId()).orElseThrow().getUsedCreditLimit();
+    }
+
+    private void runConcurrently(int threads, ThrowingTask task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            futures.add(executor.submit(() -> {
+                start.await();
+                task.run(thread);
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+    }
+
+    @Test
+    void createLoan_shouldNeverOvercommitTheSameCustomer() throws Exception {
+        Customer customer = newCustomer(12000);
+        AtomicInteger created = new AtomicInteger();
+
+        runConcurrently(THREADS, thread -> {
+            for (int i = 0; i < 10; i++) {
+                try {
+                    loanService.createLoan(customer.getId(), BigDecimal.valueOf(1000), BigDecimal.valueOf(0.2), 6);
+                    created.incrementAndGet();
+                } catch (RuntimeException e) {
+                    assertEquals("Insufficient credit limit", e.getMessage());
+                }
+            }
+        });
+
+        List<Loan> loans = loanRepository.findByCustomerId(customer.getId());
+        assertEquals(10, created.get());
+        assertEquals(10, loans.size());
+        assertEquals(0, BigDecimal.valueOf(12000).compareTo(usedCredit(customer)));
+    }
+
+    @Test
+    void reserve_shouldLetDistinctCustomersProceedIndependently() throws Exception {
+        List<Customer> customers = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            customers.add(newCustomer(500));
+        }
+
+        runConcurrently(THREADS, thread -> {
+            for (int i = 0; i < 50; i++) {
+                creditReservationService.reserve(customers.get(thread).getId(), BigDecimal.TEN);
+            }
+        });
+
+        for (Customer customer : customers) {
+            assertEquals(0, BigDecimal.valueOf(500).compareTo(usedCredit(customer)));
+        }
+    }
+
+    @Test
+    void reserve_shouldRejectOverLimitWithoutSpoilingTheCallersTransaction() {
+        Customer customer = newCustomer(1000);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            creditReservationService.reserve(customer.getId(), BigDecimal.valueOf(600));
+            RuntimeException exception = assertThrows(RuntimeException.class, () ->
+                    creditReservationService.reserve(customer.getId(), BigDecimal.valueOf(600)));
+            assertEquals("Insufficient credit limit", exception.getMessage());
+        });
+
+        assertEquals(0, BigDecimal.valueOf(600).compareTo(usedCredit(customer)));
+    }
+
+    @Test
+    void reserve_shouldRollBackWithTheCallersTransaction() {
+        Customer customer = newCustomer(1000);
+
+        assertThrows(IllegalStateException.class, () -> transactionTemplate.executeWithoutResult(status -> {
+            creditReservationService.reserve(customer.getId(), BigDecimal.valueOf(600));
+            // e.g. the loan insert failing after the reservation
+            throw new IllegalStateException("loan not persisted");
+        }));
+
+        assertEquals(0, BigDecimal.ZERO.compareTo(usedCredit(customer)));
+        creditReservationService.reserve(customer.getId(), BigDecimal.valueOf(1000));
+        assertEquals(0, BigDecimal.valueOf(1000).compareTo(usedCredit(customer)));
+    }
+
+    @FunctionalInterface
+    private interface ThrowingTask {
+        void run(int thread) throws Exception;
+    }
+}
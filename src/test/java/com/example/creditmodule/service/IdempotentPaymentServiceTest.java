@@ -0,0 +1,127 @@
+package com.example.creditmodule.service;
+
+import com.example.creditmodule.TestCustomers;
+import com.example.creditmodule.module.Loan;
+import com.example.creditmodule.module.LoanInstallment;
+import com.example.creditmodule.repository.CustomerRepository;
+import com.example.creditmodule.repository.IdempotencyRecordRepository;
+import com.example.creditmodule.repository.LoanRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class IdempotentPaymentServiceTest {
+
+    @Autowired
+    private IdempotentPaymentService idempotentPaymentService;
+
+    @Autowired
+    private LoanService loanService;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Autowired
+    private IdempotencyRecordRepository recordRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Long loanId;
+    private BigDecimal installmentAmount;
+
+    @BeforeEach
+    void setUp() {
+        Long customerId = TestCustomers.newCustomer(customerRepository, 10000).getId();
+        loanService.createLoan(customerId, BigDecimal.valueOf(1200), new BigDecimal("0.1"), 6);
+        Loan loan = loanRepository.findByCustomerId(customerId).get(0);
+        loanId = loan.getId();
+        installmentAmount = loanService.listInstallments(loanId).get(0).getAmount();
+    }
+
+    @Test
+    void retryReplaysTheFirstResultWithoutTouchingInstallments() {
+        String first = idempotentPaymentService.payLoan("pay-1", loanId, installmentAmount);
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        String retry = idempotentPaymentService.payLoan("pay-1", loanId, installmentAmount);
+
+        assertEquals(first, retry);
+        assertEquals(0, statistics.getPrepareStatementCount());
+        assertEquals(1, paidInstallments());
+        assertThrows(IllegalArgumentException.class,
+                () -> idempotentPaymentService.payLoan("pay-1", loanId, installmentAmount.add(BigDecimal.ONE)));
+    }
+
+    @Test
+    void retryAfterTheCacheForgetsIsAnsweredFromTheTable() {
+        String first = idempotentPaymentService.payLoan("pay-2", loanId, installmentAmount);
+        idempotentPaymentService.cache().invalidateAll();
+
+        assertEquals(first, idempotentPaymentService.payLoan("pay-2", loanId, installmentAmount));
+        assertEquals(1, paidInstallments());
+        assertTrue(recordRepository.existsById(loanId + ":pay-2"));
+
+        idempotentPaymentService.payLoan("pay-3", loanId, installmentAmount);
+        assertEquals(2, paidInstallments());
+    }
+
+    @Test
+    void subCentAmountReplaysFromTheTableWithoutAConflict() {
+        BigDecimal amount = installmentAmount.add(new BigDecimal("0.005"));
+        String first = idempotentPaymentService.payLoan("pay-sub-cent", loanId, amount);
+        idempotentPaymentService.cache().invalidateAll();
+
+        assertEquals(first, idempotentPaymentService.payLoan("pay-sub-cent", loanId, amount));
+        assertEquals(1, paidInstallments());
+        assertThrows(IllegalArgumentException.class,
+                () -> idempotentPaymentService.payLoan("pay-too-precise", loanId, new BigDecimal("0.00000000001")));
+    }
+
+    @Test
+    void concurrentDuplicatesPayOnce() throws Exception {
+        int clients = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(clients);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<String>> responses = new ArrayList<>();
+        try {
+            for (int i = 0; i < clients; i++) {
+                responses.add(executor.submit(() -> {
+                    start.await();
+                    return idempotentPaymentService.payLoan("storm", loanId, installmentAmount);
+                }));
+            }
+            start.countDown();
+            String expected = responses.get(0).get();
+            for (Future<String> response : responses) {
+                assertEquals(expected, response.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, paidInstallments());
+    }
+
+    private long paidInstallments() {
+        return loanService.listInstallments(loanId).stream().filter(LoanInstallment::isPaid).count();
+    }
+}
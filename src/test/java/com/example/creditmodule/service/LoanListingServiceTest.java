@@ -0,0 +1,182 @@
+package com.example.creditmodule.service;
+
+import com.example.creditmodule.TestCustomers;
+import com.example.creditmodule.module.KeysetPage;
+import com.example.creditmodule.module.Loan;
+import com.example.creditmodule.module.LoanInstallment;
+import com.example.creditmodule.module.LoanSummary;
+import com.example.creditmodule.repository.CustomerRepository;
+import com.example.creditmodule.repository.LoanRepository;
+import com.example.creditmodule.repository.UserRepository;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.httpBasic;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class LoanListingServiceTest {
+
+    @Autowired
+    private LoanListingService loanListingService;
+
+    @Autowired
+    private LoanService loanService;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Long customerId;
+    private List<Loan> loans;
+
+    @BeforeEach
+    void setUp() {
+        customerId = TestCustomers.newCustomer(customerRepository, 1_000_000).getId();
+        for (int i = 0; i < 5; i++) {
+            loanService.createLoan(customerId, BigDecimal.valueOf(1200), new BigDecimal("0.1"), 6);
+        }
+        loans = loanRepository.findByCustomerId(customerId);
+        Loan settled = loans.get(2);
+        settled.setPaid(true);
+        loanRepository.save(settled);
+    }
+
+    @Test
+    void loanPagesFollowTheCursorToTheEnd() {
+        List<Long> seen = new ArrayList<>();
+        Long cursor = null;
+        int pages = 0;
+        do {
+            KeysetPage<Loan> page = loanListingService.loanPage(customerId, null, cursor, 2);
+            page.items().forEach(loan -> seen.add(loan.getId()));
+            cursor = page.nextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(3, pages);
+        assertEquals(loans.stream().map(Loan::getId).sorted().toList(), seen);
+    }
+
+    @Test
+    void loanPagesFilterOnPaid() {
+        KeysetPage<Loan> paid = loanListingService.loanPage(customerId, true, null, 10);
+        KeysetPage<Loan> unpaid = loanListingService.loanPage(customerId, false, null, 10);
+
+        assertEquals(List.of(loans.get(2).getId()), paid.items().stream().map(Loan::getId).toList());
+        assertEquals(4, unpaid.items().size());
+        assertNull(unpaid.nextCursor());
+    }
+
+    @Test
+    void installmentPagesFilterOnDueDateAndPaid() {
+        Long loanId = loans.get(0).getId();
+        List<LoanInstallment> schedule = loanService.listInstallments(loanId);
+        loanService.payLoan(loanId, schedule.get(0).getAmount());
+
+        KeysetPage<LoanInstallment> range = loanListingService.installmentPage(loanId, null,
+                schedule.get(1).getDueDate(), schedule.get(3).getDueDate(), null, 10);
+        assertEquals(List.of(schedule.get(1).getId(), schedule.get(2).getId(), schedule.get(3).getId()),
+                range.items().stream().map(LoanInstallment::getId).toList());
+
+        KeysetPage<LoanInstallment> paid = loanListingService.installmentPage(loanId, true, null, null, null, 10);
+        assertEquals(List.of(schedule.get(0).getId()), paid.items().stream().map(LoanInstallment::getId).toList());
+
+        KeysetPage<LoanInstallment> second = loanListingService.installmentPage(loanId, false, null, null,
+                schedule.get(3).getId(), 10);
+        assertEquals(2, second.items().size());
+        assertThrows(IllegalArgumentException.class,
+                () -> loanListingService.installmentPage(loanId, null, null, null, null, 0));
+    }
+
+    @Test
+    void summariesAggregateInstallmentsInOneStatement() {
+        Long loanId = loans.get(0).getId();
+        List<LoanInstallment> schedule = loanService.listInstallments(loanId);
+        loanService.payLoan(loanId, schedule.get(0).getAmount().add(schedule.get(1).getAmount()));
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        List<LoanSummary> summaries = loanListingService.summaries(customerId, null);
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+        assertEquals(loans.stream().map(Loan::getId).sorted().toList(),
+                summaries.stream().map(LoanSummary::loanId).toList());
+        LoanSummary partlyPaid = summaries.get(0);
+        BigDecimal unpaid = schedule.subList(2, 6).stream().map(LoanInstallment::getAmount)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        assertEquals(2, partlyPaid.paidInstallments());
+        assertEquals(0, unpaid.compareTo(partlyPaid.outstandingAmount()));
+        assertEquals(schedule.get(2).getDueDate(), partlyPaid.nextDueDate());
+        assertFalse(partlyPaid.overdue());
+        assertEquals(0, summaries.get(1).paidInstallments());
+        assertEquals(List.of(loans.get(2).getId()),
+                loanListingService.summaries(customerId, true).stream().map(LoanSummary::loanId).toList());
+    }
+
+    @Test
+    void exportWritesEveryMatchingRowAsOneJsonArray() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        loanListingService.exportLoans(customerId, false, output);
+
+        List<Map<String, Object>> exported = objectMapper.readValue(output.toByteArray(), new TypeReference<>() {
+        });
+        assertEquals(4, exported.size());
+        assertTrue(exported.stream().noneMatch(loan -> loans.get(2).getId().equals(((Number) loan.get("id")).longValue())));
+    }
+
+    @Test
+    void exportStreamsOverHttpForTheOwner() throws Exception {
+        Long ownCustomerId = userRepository.findByUsername("customer").orElseThrow().getCustomer().getId();
+        loanService.createLoan(ownCustomerId, BigDecimal.valueOf(1000), new BigDecimal("0.2"), 6);
+
+        MvcResult result = mockMvc.perform(get("/api/loans/export").param("customerId", ownCustomerId.toString())
+                        .with(httpBasic("customer", "customerpass")))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        assertEquals(loanService.listLoans(ownCustomerId).size(), objectMapper.readTree(body).size());
+
+        mockMvc.perform(get("/api/loans/export").param("customerId", customerId.toString())
+                        .with(httpBasic("customer", "customerpass")))
+                .andExpect(status().isForbidden());
+    }
+}
@@ -0,0 +1,236 @@
+package com.example.creditmodule.service;
+
+import com.example.creditmodule.TestCustomers;
+import com.example.creditmodule.module.Customer;
+import com.example.creditmodule.module.CustomerPayment;
+import com.example.creditmodule.module.Loan;
+import com.example.creditmodule.module.LoanInstallment;
+import com.example.creditmodule.module.PaymentSimulation;
+import com.example.creditmodule.repository.CustomerRepository;
+import com.example.creditmodule.repository.LoanInstallmentRepository;
+import com.example.creditmodule.repository.LoanRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class LoanServiceIntegrationTest {
+
+    @Autowired
+    private LoanService loanService;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Autowired
+    private LoanInstallmentRepository installmentRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PaymentOutbox paymentOutbox;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    private Customer newCustomer(long creditLimit) {
+        return TestCustomers.newCustomer(customerRepository, creditLimit);
+    }
+
+    @Test
+    void createLoan_shouldBatchInstallmentInserts() {
+        Customer customer = newCustomer(1_000_000);
+        // warm up the pooled sequence optimizers so the measured call only sees steady-state statements
+        loanService.createLoan(customer.getId(), BigDecimal.valueOf(1000), BigDecimal.valueOf(0.2), 24);
+
+        statistics.clear();
+        loanService.createLoan(customer.getId(), BigDecimal.valueOf(1000), BigDecimal.valueOf(0.2), 24);
+
+        // customer select, conditional credit reservation, loan insert and one batched installment insert
+        assertTrue(statistics.getPrepareStatementCount() <= 5,
+                "Expected a handful of statements per loan but got " + statistics.getPrepareStatementCount());
+        assertEquals(25, statistics.getEntityInsertCount(), "loan plus 24 installments");
+        assertEquals(48, loanRepository.findByCustomerId(customer.getId()).stream()
+                .mapToLong(loan -> installmentRepository.findByLoanId(loan.getId()).size())
+                .sum());
+    }
+
+    @Test
+    void payLoan_shouldOnlyLoadPayableInstallments() {
+        Customer customer = newCustomer(1_000_000);
+        loanService.createLoan(customer.getId(), BigDecimal.valueOf(2400), BigDecimal.valueOf(0.1), 24);
+        Loan loan = loanRepository.findByCustomerId(customer.getId()).get(0);
+
+        statistics.clear();
+        loanService.payLoan(loan.getId(), BigDecimal.valueOf(110));
+
+        // loan and the payable window only, never the full 24-row schedule
+        assertTrue(statistics.getEntityLoadCount() <= 4,
+                "Expected only payable installments to be loaded but got " + statistics.getEntityLoadCount());
+        // loan select, payable select, installment update, loan update and the outbox insert
+        assertTrue(statistics.getPrepareStatementCount() <= 5,
+                "Expected a constant number of statements per payment but got " + statistics.getPrepareStatementCount());
+        assertEquals(23, loanRepository.findById(loan.getId()).orElseThrow().getRemainingInstallments());
+    }
+
+    @Test
+    void payLoan_concurrentPaymentsOnOneLoanNeverPayAnInstallmentTwice() throws Exception {
+        Customer customer = newCustomer(1_000_000);
+        loanService.createLoan(customer.getId(), BigDecimal.valueOf(2400), BigDecimal.valueOf(0.1), 24);
+        Loan loan = loanRepository.findByCustomerId(customer.getId()).get(0);
+        BigDecimal installmentAmount = installmentRepository.findByLoanId(loan.getId()).get(0).getAmount();
+
+        int threads = 32;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<String>> responses = new ArrayList<>();
+        try {
+            for (int i = 0; i < threads; i++) {
+                responses.add(executor.submit(() -> {
+                    start.await();
+                    return loanService.payLoan(loan.getId(), installmentAmount);
+                }));
+            }
+            start.countDown();
+            int accepted = 0;
+            for (Future<String> response : responses) {
+                if (response.get().startsWith("Paid 1 installments")) {
+                    accepted++;
+                }
+            }
+
+            List<LoanInstallment> paid = installmentRepository.findByLoanId(loan.getId()).stream()
+                    .filter(LoanInstallment::isPaid)
+                    .toList();
+            // Only the installments due within three months are payable
+            assertEquals(3, paid.size());
+            assertEquals(paid.size(), accepted, "every accepted payment paid a distinct installment");
+            assertEquals(21, loanRepository.findById(loan.getId()).orElseThrow().getRemainingInstallments());
+            paymentOutbox.dispatch();
+            BigDecimal expectedUsed = installmentAmount.multiply(BigDecimal.valueOf(21));
+            assertEquals(0, expectedUsed.compareTo(customerRepository.findById(customer.getId()).orElseThrow().getUsedCreditLimit()));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void payCustomer_oldestDueFirstSpreadsOnePaymentOverAllLoans() {
+        Customer customer = newCustomer(1_000_000);
+        for (int i = 0; i < 3; i++) {
+            loanService.createLoan(customer.getId(), BigDecimal.valueOf(1200), BigDecimal.valueOf(0.1), 12);
+        }
+        List<Loan> loans = loanRepository.findByCustomerId(customer.getId());
+
+        statistics.clear();
+        CustomerPayment payment = loanService.payCustomer(customer.getId(), BigDecimal.valueOf(550),
+                CustomerPayment.Policy.OLDEST_DUE_FIRST);
+
+        // customer, open loan ids, loans, payable installments of all loans, batched installment and loan
+        // updates, and one outbox insert per loan
+        assertTrue(statistics.getPrepareStatementCount() <= 9,
+                "Expected a constant number of statements per customer payment but got " + statistics.getPrepareStatementCount());
+        assertEquals(5, payment.paidInstallments());
+        // First due dates of all three loans, then the second due dates in loan order
+        assertEquals(List.of(2, 2, 1), payment.loans().stream().map(CustomerPayment.LoanAllocation::paidInstallments).toList());
+        assertEquals(0, payment.unallocated().compareTo(BigDecimal.valueOf(550).subtract(payment.totalPaid())));
+        assertEquals(List.of(10, 10, 11), loans.stream()
+                .map(loan -> loanRepository.findById(loan.getId()).orElseThrow().getRemainingInstallments())
+                .toList());
+
+        paymentOutbox.dispatch();
+        // 3 x 1320 borrowed, 5 x 110 of principal paid back
+        assertEquals(0, BigDecimal.valueOf(3410).compareTo(customerRepository.findById(customer.getId()).orElseThrow().getUsedCreditLimit()));
+    }
+
+    @Test
+    void payCustomer_highestPenaltyFirstPaysTheOverdueLoanBeforeTheOthers() {
+        Customer customer = newCustomer(1_000_000);
+        for (int i = 0; i < 3; i++) {
+            loanService.createLoan(customer.getId(), BigDecimal.valueOf(1200), BigDecimal.valueOf(0.1), 12);
+        }
+        Loan overdue = loanRepository.findByCustomerId(customer.getId()).get(2);
+        LoanInstallment first = installmentRepository.findPayableInstallments(overdue.getId(), LocalDate.now().plusMonths(3)).get(0);
+        first.setDueDate(LocalDate.now().minusDays(10));
+        installmentRepository.save(first);
+
+        CustomerPayment payment = loanService.payCustomer(customer.getId(), BigDecimal.valueOf(350),
+                CustomerPayment.Policy.HIGHEST_PENALTY_FIRST);
+
+        // 110 plus 1% penalty, then two early installments of at most 110: nothing left for the next loan
+        assertEquals(1, payment.loans().size());
+        assertEquals(overdue.getId(), payment.loans().get(0).loanId());
+        assertEquals(3, payment.loans().get(0).paidInstallments());
+        assertEquals(0, new BigDecimal("1.1").compareTo(payment.totalPenalty()));
+    }
+
+    @Test
+    void simulatePayment_isServedFromTheSnapshotUntilAPaymentCommits() {
+        Customer customer = newCustomer(1_000_000);
+        loanService.createLoan(customer.getId(), BigDecimal.valueOf(2400), BigDecimal.valueOf(0.1), 24);
+        Loan loan = loanRepository.findByCustomerId(customer.getId()).get(0);
+
+        PaymentSimulation before = loanService.simulatePayment(loan.getId(), BigDecimal.valueOf(110));
+        statistics.clear();
+        for (int amount = 100; amount < 400; amount += 10) {
+            loanService.simulatePayment(loan.getId(), BigDecimal.valueOf(amount));
+        }
+        assertEquals(0, statistics.getPrepareStatementCount(), "Repeated simulations must not query the database");
+
+        loanService.payLoan(loan.getId(), BigDecimal.valueOf(110));
+        PaymentSimulation after = loanService.simulatePayment(loan.getId(), BigDecimal.valueOf(110));
+
+        assertEquals(1, before.paidInstallments());
+        // The paid installment has left the snapshot: the one that came next is now the one settled
+        assertEquals(1, after.paidInstallments());
+        assertEquals(0, before.nextInstallmentAmount().compareTo(after.totalPaid()));
+    }
+
+    @Test
+    void listReads_areServedFromTheSecondLevelCacheAndSeeEveryWrite() {
+        Customer customer = newCustomer(1_000_000);
+        loanService.createLoan(customer.getId(), BigDecimal.valueOf(1200), BigDecimal.valueOf(0.1), 12);
+        Long loanId = loanService.listLoans(customer.getId()).get(0).getId();
+        loanService.listInstallments(loanId);
+        customerRepository.findById(customer.getId());
+
+        statistics.clear();
+        assertEquals(1, loanService.listLoans(customer.getId()).size());
+        assertEquals(12, loanService.listInstallments(loanId).size());
+        assertTrue(customerRepository.findById(customer.getId()).isPresent());
+        assertEquals(0, statistics.getPrepareStatementCount(), "Warm reads must not reach the database");
+
+        loanService.createLoan(customer.getId(), BigDecimal.valueOf(1200), BigDecimal.valueOf(0.1), 12);
+        assertEquals(2, loanService.listLoans(customer.getId()).size());
+        assertEquals(0, BigDecimal.valueOf(2640).compareTo(customerRepository.findById(customer.getId()).orElseThrow().getUsedCreditLimit()));
+
+        loanService.payLoan(loanId, BigDecimal.valueOf(110));
+        assertEquals(1, loanService.listInstallments(loanId).stream().filter(LoanInstallment::isPaid).count());
+        assertEquals(11, loanRepository.findById(loanId).orElseThrow().getRemainingInstallments());
+        paymentOutbox.dispatch();
+        assertEquals(0, BigDecimal.valueOf(2530).compareTo(customerRepository.findById(customer.getId()).orElseThrow().getUsedCreditLimit()));
+    }
+}
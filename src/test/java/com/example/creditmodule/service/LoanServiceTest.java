@@ -1,23 +1,30 @@
 package com.example.creditmodule.service;
 
+import com.example.creditmodule.analytics.PortfolioAnalytics;
 import com.example.creditmodule.module.Customer;
+import com.example.creditmodule.module.CustomerPayment;
 import com.example.creditmodule.module.Loan;
 import com.example.creditmodule.module.LoanInstallment;
+import com.example.creditmodule.module.PaymentSimulation;
 import com.example.creditmodule.repository.CustomerRepository;
 import com.example.creditmodule.repository.LoanInstallmentRepository;
 import com.example.creditmodule.repository.LoanRepository;
-
-import com.example.creditmodule.repository.UserRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -34,7 +41,28 @@ class LoanServiceTest {
     private LoanInstallmentRepository installmentRepository;
 
     @Mock
-    private UserRepository userRepository;
+    private OwnershipCache ownershipCache;
+
+    @Mock
+    private CreditReservationService creditReservationService;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private PaymentLedger paymentLedger;
+
+    @Mock
+    private PaymentOutbox paymentOutbox;
+
+    @Mock
+    private OpenInstallmentCache openInstallmentCache;
+
+    @Mock
+    private PortfolioAnalytics portfolioAnalytics;
+
+    @Spy
+    private ScheduleEngine scheduleEngine = new ScheduleEngine(16);
 
     @InjectMocks
     private LoanService loanService;
@@ -42,6 +70,12 @@ class LoanServiceTest {
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        doAnswer(invocation -> {
+            invocation.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
     }
 
     @Test
@@ -70,8 +104,8 @@ class LoanServiceTest {
         loanService.createLoan(customerId, amount, interestRate, installments);
 
         verify(loanRepository, times(1)).save(any(Loan.class));
-        verify(installmentRepository, times(installments)).save(any(LoanInstallment.class));
-        verify(customerRepository, times(1)).save(customer);
+        verify(installmentRepository, times(1)).saveAll(argThat(list -> ((List<?>) list).size() == installments));
+        verify(creditReservationService, times(1)).reserve(eq(customerId), argThat(total -> total.compareTo(BigDecimal.valueOf(12000)) == 0));
     }
 
     @Test
@@ -117,6 +151,7 @@ class LoanServiceTest {
         Loan loan = new Loan();
         loan.setId(loanId);
         loan.setCustomerId(1L);
+        loan.setRemainingInstallments(2);
         loan.setPaid(false);
 
         // Customer Mock
@@ -144,10 +179,8 @@ class LoanServiceTest {
 
         // Mocking
         when(loanRepository.findById(loanId)).thenReturn(Optional.of(loan));
-        when(installmentRepository.findByLoanId(loanId)).thenReturn(installments);
-        when(customerRepository.getReferenceById(loan.getCustomerId())).thenReturn(customer);
+        when(installmentRepository.findPayableInstallments(eq(loanId), any(LocalDate.class))).thenReturn(installments);
         when(installmentRepository.save(any(LoanInstallment.class))).thenAnswer(invocation -> invocation.getArgument(0));
-        when(customerRepository.save(any(Customer.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
         // Act
         String result = loanService.payLoan(loanId, paymentAmount);
@@ -156,9 +189,38 @@ class LoanServiceTest {
         assertTrue(result.contains("Paid 2 installments"), "The result should indicate 2 installments were paid.");
         assertTrue(installment1.isPaid(), "Installment 1 should be marked as paid.");
         assertTrue(installment2.isPaid(), "Installment 2 should be marked as paid.");
-        assertEquals(BigDecimal.ZERO, customer.getUsedCreditLimit(), "Customer's used credit limit should be reduced.");
+        assertTrue(loan.isPaid(), "Loan should be complete once its last installment is paid.");
+        assertEquals(0, loan.getRemainingInstallments());
+        verify(installmentRepository, never()).findByLoanId(any());
         verify(installmentRepository, times(2)).save(any(LoanInstallment.class));
-        verify(customerRepository, times(1)).save(customer);
+        verify(paymentOutbox, times(1)).creditReleased(eq(customer.getId()), eq(loanId), argThat(principal -> principal.compareTo(BigDecimal.valueOf(20000)) == 0));
+        verify(paymentOutbox, times(1)).loanPaidOff(customer.getId(), loanId);
+        verifyNoMoreInteractions(creditReservationService);
+        assertEquals(0, new BigDecimal("10100").compareTo(installment1.getPaidAmount()), "10 days late adds 1% penalty.");
+        assertEquals(0, new BigDecimal("9950").compareTo(installment2.getPaidAmount()), "5 days early gives 0.5% discount.");
+    }
+
+    @Test
+    void simulatePayment_shouldReportTheWaterfallWithoutWriting() {
+        LoanInstallment late = new LoanInstallment();
+        late.setAmount(BigDecimal.valueOf(10000));
+        late.setDueDate(LocalDate.now().minusDays(10));
+        LoanInstallment early = new LoanInstallment();
+        early.setAmount(BigDecimal.valueOf(10000));
+        early.setDueDate(LocalDate.now().plusDays(5));
+        when(openInstallmentCache.get(eq(1L), any(LocalDate.class)))
+                .thenReturn(new OpenInstallmentCache.OpenInstallments(LocalDate.now(), 3, List.of(late, early)));
+
+        PaymentSimulation simulation = loanService.simulatePayment(1L, BigDecimal.valueOf(15000));
+
+        assertEquals(1, simulation.paidInstallments());
+        assertEquals(0, new BigDecimal("10100").compareTo(simulation.totalPaid()));
+        assertEquals(0, new BigDecimal("100").compareTo(simulation.totalPenalty()));
+        assertEquals(0, new BigDecimal("4900").compareTo(simulation.unallocated()));
+        assertEquals(0, new BigDecimal("9950").compareTo(simulation.nextInstallmentAmount()));
+        assertFalse(simulation.loanFullyPaid());
+        assertFalse(late.isPaid(), "A simulation must not touch the installments");
+        verifyNoInteractions(installmentRepository, loanRepository, paymentLedger, paymentOutbox);
     }
 
     @Test
@@ -172,7 +234,7 @@ class LoanServiceTest {
         loan.setPaid(false);
 
         when(loanRepository.findById(loanId)).thenReturn(Optional.of(loan));
-        when(installmentRepository.findByLoanId(loanId)).thenReturn(List.of());
+        when(installmentRepository.findPayableInstallments(eq(loanId), any(LocalDate.class))).thenReturn(List.of());
 
         String result = loanService.payLoan(loanId, paymentAmount);
 
@@ -240,4 +302,37 @@ class LoanServiceTest {
 
         assertTrue(installments.isEmpty());
     }
-}
\ No newline at end of file
+
+    private static Loan openLoan(Long id) {
+        Loan loan = new Loan();
+        loan.setId(id);
+        loan.setCustomerId(1L);
+        loan.setPaid(false);
+        return loan;
+    }
+
+    @Test
+    void payCustomer_shouldTakeTheLoansAgainWhenOneWasOpenedMeanwhile() {
+        when(customerRepository.findById(1L)).thenReturn(Optional.of(new Customer()));
+        when(loanRepository.findOpenLoanIds(1L)).thenReturn(List.of(10L)).thenReturn(List.of(10L, 11L));
+        when(loanRepository.findOpenLoans(1L)).thenReturn(List.of(openLoan(10L), openLoan(11L)));
+
+        CustomerPayment payment = loanService.payCustomer(1L, BigDecimal.valueOf(100), CustomerPayment.Policy.OLDEST_DUE_FIRST);
+
+        assertNotNull(payment);
+        verify(loanRepository, times(2)).findOpenLoanIds(1L);
+        verify(installmentRepository, times(1)).findPayableInstallmentsOfLoans(
+                argThat(ids -> ids.containsAll(List.of(10L, 11L))), any());
+    }
+
+    @Test
+    void payCustomer_shouldGiveUpWhenTheLoansKeepChanging() {
+        when(customerRepository.findById(1L)).thenReturn(Optional.of(new Customer()));
+        when(loanRepository.findOpenLoanIds(1L)).thenReturn(List.of(10L));
+        when(loanRepository.findOpenLoans(1L)).thenReturn(List.of(openLoan(10L), openLoan(11L)));
+
+        assertThrows(ConcurrencyFailureException.class,
+                () -> loanService.payCustomer(1L, BigDecimal.valueOf(100), CustomerPayment.Policy.OLDEST_DUE_FIRST));
+        verify(installmentRepository, never()).findPayableInstallmentsOfLoans(any(), any());
+    }
+}
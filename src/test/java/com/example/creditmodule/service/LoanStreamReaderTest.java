@@ -0,0 +1,110 @@
+package com.example.creditmodule.service;
+
+import com.example.creditmodule.module.Loan;
+import com.example.creditmodule.module.LoanInstallment;
+import com.example.creditmodule.repository.LoanRepository;
+import com.example.creditmodule.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import reactor.test.StepVerifier;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.httpBasic;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class LoanStreamReaderTest {
+
+    @Autowired
+    private LoanStreamReader loanStreamReader;
+
+    @Autowired
+    private LoanService loanService;
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    private Long customerId() {
+        return userRepository.findByUsername("customer").orElseThrow().getCustomer().getId();
+    }
+
+    private Loan newLoan(Long customerId) {
+        loanService.createLoan(customerId, BigDecimal.valueOf(1200), new BigDecimal("0.1"), 6);
+        List<Loan> loans = loanRepository.findByCustomerId(customerId);
+        return loans.get(loans.size() - 1);
+    }
+
+    @Test
+    void streamsWhatJpaWrote() {
+        Long customerId = customerId();
+        Loan loan = newLoan(customerId);
+        List<LoanInstallment> expected = loanService.listInstallments(loan.getId());
+
+        StepVerifier.create(loanStreamReader.streamLoans(customerId).filter(l -> l.getId().equals(loan.getId())))
+                .assertNext(streamed -> {
+                    assertEquals(loan.getCustomerId(), streamed.getCustomerId());
+                    assertEquals(0, loan.getLoanAmount().compareTo(streamed.getLoanAmount()));
+                    assertEquals(6, streamed.getRemainingInstallments());
+                    assertFalse(streamed.isPaid());
+                })
+                .verifyComplete();
+
+        List<LoanInstallment> streamed = loanStreamReader.streamInstallments(loan.getId()).collectList().block();
+        assertNotNull(streamed);
+        assertEquals(expected.size(), streamed.size());
+        for (int i = 0; i < streamed.size(); i++) {
+            assertEquals(expected.get(i).getDueDate(), streamed.get(i).getDueDate());
+            assertEquals(0, expected.get(i).getAmount().compareTo(streamed.get(i).getAmount()));
+        }
+    }
+
+    @Test
+    void honoursDemand() {
+        Loan loan = newLoan(customerId());
+
+        StepVerifier.create(loanStreamReader.streamInstallments(loan.getId()), 2)
+                .expectNextCount(2)
+                .thenRequest(4)
+                .expectNextCount(4)
+                .verifyComplete();
+    }
+
+    @Test
+    void appliesTheSameOwnershipRules() throws Exception {
+        Long customerId = customerId();
+        Loan loan = newLoan(customerId);
+
+        MvcResult result = mockMvc.perform(get("/api/loans/{loanId}/installments/stream", loan.getId())
+                        .accept(MediaType.APPLICATION_NDJSON)
+                        .with(httpBasic("customer", "customerpass")))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        assertEquals(6, body.lines().count());
+
+        mockMvc.perform(get("/api/loans/list/stream").param("customerId", String.valueOf(customerId + 1))
+                        .accept(MediaType.APPLICATION_NDJSON)
+                        .with(httpBasic("customer", "customerpass")))
+                .andExpect(status().isForbidden());
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.creditmodule.service;
+
+import com.example.creditmodule.TestCustomers;
+import com.example.creditmodule.module.Customer;
+import com.example.creditmodule.module.Loan;
+import com.example.creditmodule.module.User;
+import com.example.creditmodule.repository.CustomerRepository;
+import com.example.creditmodule.repository.LoanRepository;
+import com.example.creditmodule.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest
+class OwnershipCacheTest {
+
+    @Autowired
+    private LoanService loanService;
+
+    @Autowired
+    private OwnershipCache ownershipCache;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        ownershipCache.evictAll();
+    }
+
+    private Customer newCustomer() {
+        return TestCustomers.newCustomer(customerRepository, 10000);
+    }
+
+    private User newUser(Customer customer) {
+        User user = new User();
+        user.setUsername("owner-" + UUID.randomUUID());
+        user.setPassword("{noop}secret");
+        user.setRole("CUSTOMER");
+        user.setCustomer(customer);
+        return userRepository.save(user);
+    }
+
+    private Loan newLoan(Customer customer) {
+        Loan loan = new Loan();
+        loan.setCustomerId(customer.getId());
+        loan.setLoanAmount(BigDecimal.valueOf(1000));
+        loan.setNumberOfInstallments(6);
+        loan.setCreateDate(LocalDate.now());
+        loan.setPaid(false);
+        return loanRepository.save(loan);
+    }
+
+    @Test
+    void repeatedChecksAreServedFromTheCache() {
+        Customer customer = newCustomer();
+        User user = newUser(customer);
+        Loan loan = newLoan(customer);
+
+        assertTrue(loanService.isLoanOwner(user.getUsername(), loan.getId()));
+        statistics.clear();
+        for (int i = 0; i < 100; i++) {
+            assertTrue(loanService.isCustomerOwner(user.getUsername(), customer.getId()));
+            assertTrue(loanService.isLoanOwner(user.getUsername(), loan.getId()));
+        }
+
+        assertEquals(0, statistics.getPrepareStatementCount());
+        assertTrue(ownershipCache.usernameCache().hitRate() > 0.9);
+    }
+
+    @Test
+    void otherCustomersAndUnknownLoansAreRejected() {
+        Customer owner = newCustomer();
+        Customer stranger = newCustomer();
+        User strangerUser = newUser(stranger);
+        Loan loan = newLoan(owner);
+
+        assertFalse(loanService.isLoanOwner(strangerUser.getUsername(), loan.getId()));
+        assertFalse(loanService.isCustomerOwner(strangerUser.getUsername(), owner.getId()));
+        assertFalse(loanService.isLoanOwner(strangerUser.getUsername(), Long.MAX_VALUE));
+        assertFalse(loanService.isCustomerOwner("no-such-user", owner.getId()));
+    }
+
+    @Test
+    void updatingTheUserEvictsItsEntry() {
+        Customer first = newCustomer();
+        Customer second = newCustomer();
+        User user = newUser(first);
+        assertTrue(loanService.isCustomerOwner(user.getUsername(), first.getId()));
+
+        user.setCustomer(second);
+        userRepository.save(user);
+
+        assertFalse(loanService.isCustomerOwner(user.getUsername(), first.getId()));
+        assertTrue(loanService.isCustomerOwner(user.getUsername(), second.getId()));
+    }
+
+    @Test
+    void renamingTheUserEvictsTheOldName() {
+        Customer customer = newCustomer();
+        User user = newUser(customer);
+        String oldUsername = user.getUsername();
+        assertTrue(loanService.isCustomerOwner(oldUsername, customer.getId()));
+
+        user.setUsername("renamed-" + UUID.randomUUID());
+        userRepository.save(user);
+
+        assertFalse(loanService.isCustomerOwner(oldUsername, customer.getId()));
+        assertTrue(loanService.isCustomerOwner(user.getUsername(), customer.getId()));
+    }
+
+    @Test
+    void aLoadThatRacesAnEvictionIsNotCached() {
+        UserRepository users = mock(UserRepository.class);
+        OwnershipCache cache = new OwnershipCache(users, mock(LoanRepository.class), new SimpleMeterRegistry(), 10, 10);
+        // the first load reads the old row, then the change commits and evicts before the load stores it
+        when(users.findCustomerIdByUsername("racer")).thenAnswer(invocation -> {
+            cache.evictUser("racer");
+            return Optional.of(1L);
+        }).thenReturn(Optional.of(2L));
+
+        assertEquals(Optional.of(1L), cache.customerIdOf("racer"));
+        assertEquals(0, cache.usernameCache().size());
+        assertEquals(Optional.of(2L), cache.customerIdOf("racer"));
+        assertEquals(Optional.of(2L), cache.customerIdOf("racer"));
+        verify(users, times(2)).findCustomerIdByUsername("racer");
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.creditmodule.service;
+
+import com.example.creditmodule.TestCustomers;
+import com.example.creditmodule.module.Customer;
+import com.example.creditmodule.module.Loan;
+import com.example.creditmodule.module.LoanInstallment;
+import com.example.creditmodule.module.PaymentBatchReport;
+import com.example.creditmodule.module.PaymentInstruction;
+import com.example.creditmodule.repository.CustomerRepository;
+import com.example.creditmodule.repository.LoanInstallmentRepository;
+import com.example.creditmodule.repository.LoanRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class PaymentBatchServiceTest {
+
+    @Autowired
+    private PaymentBatchService paymentBatchService;
+
+    @Autowired
+    private LoanService loanService;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Autowired
+    private LoanInstallmentRepository installmentRepository;
+
+    @Autowired
+    private PaymentOutbox paymentOutbox;
+
+    private Customer newCustomerWithLoans(int loans) {
+        Customer customer = TestCustomers.newCustomer(customerRepository, 100000);
+        for (int i = 0; i < loans; i++) {
+            loanService.createLoan(customer.getId(), BigDecimal.valueOf(1000), BigDecimal.valueOf(0.2), 12);
+        }
+        return customer;
+    }
+
+    @Test
+    void process_shouldApplyEveryCustomersPaymentsWithoutLosingCreditReleases() {
+        List<Customer> customers = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            customers.add(newCustomerWithLoans(3));
+        }
+
+        List<PaymentInstruction> payments = new ArrayList<>();
+        for (int round = 0; round < 2; round++) {
+            for (Customer customer : customers) {
+                for (Loan loan : loanRepository.findByCustomerId(customer.getId())) {
+                    payments.add(new PaymentInstruction(loan.getId(), BigDecimal.valueOf(100)));
+                }
+            }
+        }
+        payments.add(new PaymentInstruction(-1L, BigDecimal.valueOf(100)));
+
+        PaymentBatchReport report = paymentBatchService.process(payments);
+
+        assertEquals(payments.size(), report.totalRows());
+        assertEquals(6, report.customers());
+        assertEquals(payments.size() - 1, report.succeeded());
+        assertEquals("Loan not found", report.results().get(payments.size() - 1).message());
+        paymentOutbox.dispatch();
+
+        for (Customer customer : customers) {
+            BigDecimal principalPaid = BigDecimal.ZERO;
+            for (Loan loan : loanRepository.findByCustomerId(customer.getId())) {
+                List<LoanInstallment> paid = installmentRepository.findByLoanId(loan.getId()).stream()
+                        .filter(LoanInstallment::isPaid)
+                        .toList();
+                assertEquals(2, paid.size(), "each loan receives two in-order payments");
+                for (LoanInstallment installment : paid) {
+                    principalPaid = principalPaid.add(installment.getAmount());
+                }
+            }
+            BigDecimal used = customerRepository.findById(customer.getId()).orElseThrow().getUsedCreditLimit();
+            assertEquals(0, BigDecimal.valueOf(3600).subtract(principalPaid).compareTo(used));
+        }
+    }
+
+    @Test
+    void processCsv_shouldSkipTheHeaderAndBlankLinesAndNumberRowsByLine() throws Exception {
+        Loan loan = loanRepository.findByCustomerId(newCustomerWithLoans(1).getId()).get(0);
+        String csv = "loanId,amount\n" + loan.getId() + ",100.50\n\n" + loan.getId() + ",100\n";
+
+        PaymentBatchReport report = paymentBatchService.processCsv(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(2, report.totalRows());
+        assertEquals(2, report.succeeded());
+        assertEquals(List.of(2, 4), report.results().stream().map(PaymentBatchReport.RowResult::row).toList());
+    }
+
+    @Test
+    void processCsv_shouldReportMalformedRowsAndApplyTheRest() throws Exception {
+        Loan loan = loanRepository.findByCustomerId(newCustomerWithLoans(1).getId()).get(0);
+        // A broken first row is not mistaken for a header
+        String csv = "x1,100\n" + loan.getId() + ",100\n" + loan.getId() + ",ten\n1,2,3\n" + loan.getId() + ",100\n";
+
+        PaymentBatchReport report = paymentBatchService.processCsv(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(5, report.totalRows());
+        assertEquals(2, report.succeeded());
+        List<PaymentBatchReport.RowResult> results = report.results();
+        assertEquals(List.of(1, 2, 3, 4, 5), results.stream().map(PaymentBatchReport.RowResult::row).toList());
+        assertFalse(results.get(0).success());
+        assertEquals("Malformed loanId: x1", results.get(0).message());
+        assertEquals(loan.getId(), results.get(2).loanId());
+        assertEquals("Malformed amount: ten", results.get(2).message());
+        assertEquals("Malformed row, expected loanId,amount", results.get(3).message());
+        assertTrue(results.get(1).success());
+        assertTrue(results.get(4).success());
+        assertEquals(2, installmentRepository.findByLoanId(loan.getId()).stream().filter(LoanInstallment::isPaid).count());
+    }
+}
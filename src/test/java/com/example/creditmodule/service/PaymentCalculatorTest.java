@@ -0,0 +1,100 @@
+package com.example.creditmodule.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PaymentCalculatorTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2024, 12, 15);
+
+    // The BigDecimal arithmetic LoanService used before the fixed-point engine, kept as the oracle
+    private static BigDecimal referenceAdjustment(BigDecimal amount, LocalDate dueDate, LocalDate paymentDate) {
+        if (paymentDate.isBefore(dueDate)) {
+            long daysBeforeDue = ChronoUnit.DAYS.between(paymentDate, dueDate);
+            return amount.multiply(BigDecimal.valueOf(0.001)).multiply(BigDecimal.valueOf(daysBeforeDue)).negate();
+        } else if (paymentDate.isAfter(dueDate)) {
+            long daysAfterDue = ChronoUnit.DAYS.between(dueDate, paymentDate);
+            return amount.multiply(BigDecimal.valueOf(0.001)).multiply(BigDecimal.valueOf(daysAfterDue));
+        }
+        return BigDecimal.ZERO;
+    }
+
+    @Test
+    void adjustmentUnits_shouldApplyOneTenthPercentPerDay() {
+        long due = TODAY.toEpochDay();
+
+        assertEquals(10_000_000, PaymentCalculator.adjustmentUnits(1_000_000, due, due + 10)); // 10000.00 ten days late: +100
+        assertEquals(-5_000_000, PaymentCalculator.adjustmentUnits(1_000_000, due, due - 5));  // five days early: -50
+        assertEquals(0, PaymentCalculator.adjustmentUnits(1_000_000, due, due));
+        assertEquals(0, new BigDecimal("1.23").compareTo(PaymentCalculator.fromUnits(
+                PaymentCalculator.adjustmentUnits(4100, due, due + 30))));
+    }
+
+    @Test
+    void waterfall_shouldMatchBigDecimalArithmeticExactly() {
+        Random random = new Random(42);
+        for (int run = 0; run < 10_000; run++) {
+            int count = 1 + random.nextInt(24);
+            long[] amountCents = new long[count];
+            long[] dueEpochDays = new long[count];
+            LocalDate firstDue = TODAY.plusDays(random.nextInt(200) - 120).withDayOfMonth(1);
+            for (int i = 0; i < count; i++) {
+                amountCents[i] = 1 + random.nextInt(5_000_000);
+                dueEpochDays[i] = firstDue.plusMonths(i).toEpochDay();
+            }
+            BigDecimal payment = BigDecimal.valueOf(random.nextLong(1, 50_000_000_000L), 2 + random.nextInt(4));
+
+            long[] paidUnits = new long[count];
+            PaymentCalculator.Waterfall waterfall = PaymentCalculator.waterfall(amountCents, dueEpochDays, count,
+                    PaymentCalculator.toUnits(payment), TODAY.toEpochDay(), paidUnits);
+
+            BigDecimal remaining = payment;
+            BigDecimal totalPaid = BigDecimal.ZERO;
+            BigDecimal totalDiscount = BigDecimal.ZERO;
+            BigDecimal totalPenalty = BigDecimal.ZERO;
+            BigDecimal totalPrincipal = BigDecimal.ZERO;
+            int paid = 0;
+            for (int i = 0; i < count; i++) {
+                BigDecimal amount = BigDecimal.valueOf(amountCents[i], 2);
+                BigDecimal adjustment = referenceAdjustment(amount, LocalDate.ofEpochDay(dueEpochDays[i]), TODAY);
+                BigDecimal adjusted = amount.add(adjustment);
+                if (remaining.compareTo(adjusted) < 0) {
+                    break;
+                }
+                remaining = remaining.subtract(adjusted);
+                totalPaid = totalPaid.add(adjusted);
+                totalPrincipal = totalPrincipal.add(amount);
+                if (adjustment.signum() < 0) {
+                    totalDiscount = totalDiscount.add(adjustment.abs());
+                } else {
+                    totalPenalty = totalPenalty.add(adjustment);
+                }
+                assertEquals(0, adjusted.compareTo(PaymentCalculator.fromUnits(paidUnits[i])));
+                paid++;
+            }
+
+            assertEquals(paid, waterfall.paidCount());
+            assertEquals(0, totalPaid.compareTo(PaymentCalculator.fromUnits(waterfall.totalPaidUnits())));
+            assertEquals(0, totalDiscount.compareTo(PaymentCalculator.fromUnits(waterfall.totalDiscountUnits())));
+            assertEquals(0, totalPenalty.compareTo(PaymentCalculator.fromUnits(waterfall.totalPenaltyUnits())));
+            assertEquals(0, totalPrincipal.compareTo(PaymentCalculator.fromCents(waterfall.totalPrincipalCents())));
+        }
+    }
+
+    @Test
+    void conversions_shouldKeepCentsAndRejectSubCentAmounts() {
+        assertTrue(PaymentCalculator.isWholeCents(new BigDecimal("916.67")));
+        assertTrue(PaymentCalculator.isWholeCents(new BigDecimal("1000.0000")));
+        assertFalse(PaymentCalculator.isWholeCents(new BigDecimal("916.666")));
+        assertEquals(91667, PaymentCalculator.toCents(new BigDecimal("916.67")));
+        assertEquals(12_345_678, PaymentCalculator.toUnits(new BigDecimal("123.456789")));
+        assertEquals("20050.00", PaymentCalculator.fromUnits(2_005_000_000L).toString());
+        assertEquals("1.23456", PaymentCalculator.fromUnits(123_456).toString());
+    }
+}
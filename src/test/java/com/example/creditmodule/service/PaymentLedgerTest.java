@@ -0,0 +1,115 @@
+package com.example.creditmodule.service;
+
+import com.example.creditmodule.TestCustomers;
+import com.example.creditmodule.journal.PaymentJournal;
+import com.example.creditmodule.module.Loan;
+import com.example.creditmodule.module.LoanInstallment;
+import com.example.creditmodule.repository.CustomerRepository;
+import com.example.creditmodule.repository.LoanRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "credit.journal.enabled=true")
+class PaymentLedgerTest {
+
+    @Autowired
+    private PaymentLedger paymentLedger;
+
+    @Autowired
+    private PaymentJournal paymentJournal;
+
+    @Autowired
+    private LoanService loanService;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PaymentOutbox paymentOutbox;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Long customerId;
+    private Long loanId;
+    private BigDecimal installmentAmount;
+
+    @BeforeEach
+    void setUp() {
+        customerId = TestCustomers.newCustomer(customerRepository, 10000).getId();
+        loanService.createLoan(customerId, BigDecimal.valueOf(1200), new BigDecimal("0.1"), 6);
+        loanId = loanRepository.findByCustomerId(customerId).get(0).getId();
+        installmentAmount = loanService.listInstallments(loanId).get(0).getAmount();
+    }
+
+    @Test
+    void paymentIsJournaledAndStampedOnTheLoan() {
+        long before = paymentJournal.lastSequence();
+        loanService.payLoan(loanId, installmentAmount);
+
+        Loan loan = loanRepository.findById(loanId).orElseThrow();
+        assertTrue(loan.getJournalSequence() > before);
+        assertEquals(loan.getJournalSequence(), paymentJournal.lastSequence());
+        assertEquals(0, paymentLedger.replay(before), "committed payments are not applied twice");
+    }
+
+    @Test
+    void replayRestoresAPaymentWhoseCommitWasLost() {
+        long before = paymentJournal.lastSequence();
+        BigDecimal usedBefore = usedCredit();
+        loanService.payLoan(loanId, installmentAmount);
+        paymentOutbox.dispatch();
+        BigDecimal usedAfter = usedCredit();
+
+        // Put the tables back as if the process died between the journal fsync and the commit
+        jdbcTemplate.update("update loan_installment set is_paid = false, paid_amount = 0, payment_date = null where loan_id = ?", loanId);
+        jdbcTemplate.update("update loan set remaining_installments = 6, is_paid = false, journal_sequence = 0 where id = ?", loanId);
+        jdbcTemplate.update("update customer set used_credit_limit = ? where id = ?", usedBefore, customerId);
+        // ... and came back with an empty second-level cache
+        entityManagerFactory.unwrap(SessionFactory.class).getCache().evictAllRegions();
+
+        assertEquals(1, paymentLedger.replay(before));
+        paymentOutbox.dispatch();
+        List<LoanInstallment> installments = loanService.listInstallments(loanId);
+        assertEquals(1, installments.stream().filter(LoanInstallment::isPaid).count());
+        assertEquals(5, loanRepository.findById(loanId).orElseThrow().getRemainingInstallments());
+        assertEquals(0, usedAfter.compareTo(usedCredit()));
+    }
+
+    @Test
+    void rolledBackPaymentIsNotReplayed() {
+        long before = paymentJournal.lastSequence();
+        transactionTemplate.executeWithoutResult(status -> {
+            loanService.payLoan(loanId, installmentAmount);
+            status.setRollbackOnly();
+        });
+
+        assertEquals(before + 2, paymentJournal.lastSequence(), "payment followed by its abort");
+        assertEquals(0, paymentLedger.replay(before));
+        assertTrue(loanService.listInstallments(loanId).stream().noneMatch(LoanInstallment::isPaid));
+    }
+
+    private BigDecimal usedCredit() {
+        return customerRepository.findById(customerId).orElseThrow().getUsedCreditLimit();
+    }
+}
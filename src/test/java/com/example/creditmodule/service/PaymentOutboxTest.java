@@ -0,0 +1,145 @@
+package com.example.creditmodule.service;
+
+import com.example.creditmodule.TestCustomers;
+import com.example.creditmodule.module.LoanInstallment;
+import com.example.creditmodule.module.LoanPaidOff;
+import com.example.creditmodule.repository.CustomerRepository;
+import com.example.creditmodule.repository.LoanRepository;
+import com.example.creditmodule.repository.OutboxEventRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@RecordApplicationEvents
+class PaymentOutboxTest {
+
+    @Autowired
+    private PaymentOutbox paymentOutbox;
+
+    @Autowired
+    private LoanService loanService;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ApplicationEvents applicationEvents;
+
+    private Long newCustomerWithLoan() {
+        Long customerId = TestCustomers.newCustomer(customerRepository, 10000).getId();
+        loanService.createLoan(customerId, BigDecimal.valueOf(1200), new BigDecimal("0.1"), 6);
+        return customerId;
+    }
+
+    @Test
+    void payingOffALoanReleasesItsCreditOnceAndAnnouncesIt() {
+        Long customerId = newCustomerWithLoan();
+        Long loanId = loanRepository.findByCustomerId(customerId).get(0).getId();
+        List<LoanInstallment> schedule = loanService.listInstallments(loanId);
+        BigDecimal total = schedule.stream().map(LoanInstallment::getAmount).reduce(BigDecimal.ZERO, BigDecimal::add);
+
+        // Only the first three installments fall inside the payable window
+        loanService.payLoan(loanId, total);
+        jumpDueDates(loanId);
+        loanService.payLoan(loanId, total);
+        paymentOutbox.dispatch();
+
+        assertTrue(loanRepository.findById(loanId).orElseThrow().isPaid());
+        assertEquals(0, BigDecimal.ZERO.compareTo(usedCredit(customerId)));
+        assertEquals(0, paymentOutbox.dispatch(), "nothing is applied twice");
+        assertEquals(List.of(new LoanPaidOff(loanId, customerId)),
+                applicationEvents.stream(LoanPaidOff.class).filter(event -> event.loanId().equals(loanId)).toList());
+    }
+
+    @Test
+    void rolledBackPaymentLeavesNoOutboxRow() {
+        Long customerId = newCustomerWithLoan();
+        Long loanId = loanRepository.findByCustomerId(customerId).get(0).getId();
+        long rowsBefore = outboxEventRepository.count();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            loanService.payLoan(loanId, BigDecimal.valueOf(220));
+            status.setRollbackOnly();
+        });
+
+        assertEquals(rowsBefore, outboxEventRepository.count());
+        paymentOutbox.dispatch();
+        assertEquals(0, BigDecimal.valueOf(1320).compareTo(usedCredit(customerId)));
+    }
+
+    @Test
+    void concurrentDispatchersApplyEachReleaseExactlyOnce() throws Exception {
+        List<Long> customers = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Long customerId = newCustomerWithLoan();
+            customers.add(customerId);
+            Long loanId = loanRepository.findByCustomerId(customerId).get(0).getId();
+            loanService.payLoan(loanId, BigDecimal.valueOf(220));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Integer>> dispatchers = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                dispatchers.add(executor.submit(paymentOutbox::dispatch));
+            }
+            for (Future<Integer> dispatcher : dispatchers) {
+                dispatcher.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        paymentOutbox.dispatch();
+
+        for (Long customerId : customers) {
+            assertEquals(0, BigDecimal.valueOf(1100).compareTo(usedCredit(customerId)));
+        }
+    }
+
+    @Test
+    void pollDrainsTheOutboxInTheBackground() throws Exception {
+        Long customerId = newCustomerWithLoan();
+        Long loanId = loanRepository.findByCustomerId(customerId).get(0).getId();
+        loanService.payLoan(loanId, BigDecimal.valueOf(220));
+
+        paymentOutbox.poll();
+
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (usedCredit(customerId).compareTo(BigDecimal.valueOf(1100)) != 0) {
+            assertTrue(System.nanoTime() < deadline, "outbox was not drained in the background");
+            Thread.sleep(20);
+        }
+    }
+
+    private void jumpDueDates(Long loanId) {
+        transactionTemplate.executeWithoutResult(status -> loanService.listInstallments(loanId).stream()
+                .filter(installment -> !installment.isPaid())
+                .forEach(installment -> installment.setDueDate(installment.getDueDate().minusMonths(3))));
+    }
+
+    private BigDecimal usedCredit(Long customerId) {
+        return customerRepository.findById(customerId).orElseThrow().getUsedCreditLimit();
+    }
+}
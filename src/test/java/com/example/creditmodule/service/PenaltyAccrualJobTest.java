@@ -0,0 +1,133 @@
+package com.example.creditmodule.service;
+
+import com.example.creditmodule.TestCustomers;
+import com.example.creditmodule.module.AccrualCheckpoint;
+import com.example.creditmodule.module.Customer;
+import com.example.creditmodule.module.Loan;
+import com.example.creditmodule.module.LoanInstallment;
+import com.example.creditmodule.repository.AccrualCheckpointRepository;
+import com.example.creditmodule.repository.CustomerRepository;
+import com.example.creditmodule.repository.LoanInstallmentRepository;
+import com.example.creditmodule.repository.LoanRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class PenaltyAccrualJobTest {
+
+    @Autowired
+    private LoanService loanService;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Autowired
+    private LoanInstallmentRepository installmentRepository;
+
+    @Autowired
+    private AccrualCheckpointRepository checkpointRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private PenaltyAccrualJob newJob(int chunkSize) {
+        return new PenaltyAccrualJob(installmentRepository, checkpointRepository, jdbcTemplate, transactionTemplate,
+                entityManagerFactory, chunkSize, 2);
+    }
+
+    // Creates a 12-installment loan whose first `overdue` installments fell due in the past
+    private List<LoanInstallment> overdueLoan(LocalDate asOf, int overdue) {
+        Customer customer = TestCustomers.newCustomer(customerRepository, 100000);
+        loanService.createLoan(customer.getId(), BigDecimal.valueOf(10000), BigDecimal.valueOf(0.2), 12);
+        Loan loan = loanRepository.findByCustomerId(customer.getId()).get(0);
+
+        List<LoanInstallment> installments = installmentRepository.findByLoanId(loan.getId()).stream()
+                .sorted(Comparator.comparing(LoanInstallment::getId))
+                .toList();
+        for (int i = 0; i < overdue; i++) {
+            installments.get(i).setDueDate(asOf.minusDays(10L * (overdue - i)));
+        }
+        return installmentRepository.saveAll(installments);
+    }
+
+    private LoanInstallment reload(LoanInstallment installment) {
+        return installmentRepository.findById(installment.getId()).orElseThrow();
+    }
+
+    @Test
+    void run_shouldAccruePenaltiesOnOverdueUnpaidInstallmentsOnly() {
+        LocalDate asOf = LocalDate.now().plusDays(1);
+        List<LoanInstallment> installments = overdueLoan(asOf, 5);
+
+        AccrualCheckpoint checkpoint = newJob(2).run(asOf);
+
+        assertTrue(checkpoint.isCompleted());
+        // installment 0 is 50 days late on 1000.00: 1000.00 * 0.001 * 50
+        LoanInstallment first = reload(installments.get(0));
+        assertEquals(0, new BigDecimal("50").compareTo(first.getAccruedPenalty()));
+        assertEquals(asOf, first.getPenaltyAccruedOn());
+        assertEquals(0, new BigDecimal("10").compareTo(reload(installments.get(4)).getAccruedPenalty()));
+        assertNull(reload(installments.get(5)).getAccruedPenalty());
+
+        // a completed run is not repeated
+        assertEquals(checkpoint.getProcessedInstallments(), newJob(2).run(asOf).getProcessedInstallments());
+    }
+
+    @Test
+    void run_shouldResumeAfterTheLastCommittedChunk() {
+        LocalDate asOf = LocalDate.now().plusDays(2);
+        List<LoanInstallment> installments = overdueLoan(asOf, 4);
+
+        // simulate a crash after the chunk that ended with the second installment was committed
+        AccrualCheckpoint interrupted = new AccrualCheckpoint();
+        interrupted.setAccrualDate(asOf);
+        interrupted.setLastInstallmentId(installments.get(1).getId());
+        checkpointRepository.save(interrupted);
+
+        AccrualCheckpoint checkpoint = newJob(3).run(asOf);
+
+        assertTrue(checkpoint.isCompleted());
+        assertNull(reload(installments.get(0)).getAccruedPenalty());
+        assertNull(reload(installments.get(1)).getAccruedPenalty());
+        assertNotNull(reload(installments.get(2)).getAccruedPenalty());
+        assertNotNull(reload(installments.get(3)).getAccruedPenalty());
+    }
+
+    @Test
+    void run_shouldNotFailAPaymentThatLoadedTheInstallmentBeforeTheChunk() {
+        LocalDate asOf = LocalDate.now().plusDays(3);
+        Long installmentId = overdueLoan(asOf, 1).get(0).getId();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            LoanInstallment loaded = installmentRepository.findById(installmentId).orElseThrow();
+            CompletableFuture.runAsync(() -> newJob(10).run(asOf)).join();
+            loaded.setPaidAmount(loaded.getAmount());
+            loaded.setPaymentDate(asOf);
+            loaded.setPaid(true);
+        });
+
+        assertTrue(installmentRepository.findById(installmentId).orElseThrow().isPaid());
+        assertTrue(checkpointRepository.findById(asOf).orElseThrow().isCompleted());
+    }
+}
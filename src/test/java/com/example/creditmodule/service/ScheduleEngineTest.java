@@ -0,0 +1,53 @@
+package com.example.creditmodule.service;
+
+import com.example.creditmodule.module.LoanQuote;
+import com.example.creditmodule.module.ScheduledInstallment;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScheduleEngineTest {
+
+    private final ScheduleEngine scheduleEngine = new ScheduleEngine(4);
+
+    @Test
+    void quote_shouldPutRemainderOnLastInstallment() {
+        LoanQuote quote = scheduleEngine.quote(BigDecimal.valueOf(10000), new BigDecimal("0.1"), 12, LocalDate.of(2024, 11, 20));
+
+        assertEquals(new BigDecimal("11000.00"), quote.totalAmount());
+        List<ScheduledInstallment> schedule = quote.schedule();
+        assertEquals(12, schedule.size());
+        assertEquals(new BigDecimal("916.66"), schedule.get(0).amount());
+        assertEquals(new BigDecimal("916.74"), schedule.get(11).amount());
+        assertEquals(LocalDate.of(2024, 12, 1), schedule.get(0).dueDate());
+        assertEquals(LocalDate.of(2025, 11, 1), schedule.get(11).dueDate());
+        assertEquals(quote.totalAmount(), schedule.stream().map(ScheduledInstallment::amount).reduce(BigDecimal.ZERO, BigDecimal::add));
+    }
+
+    @Test
+    void schedule_shouldAlwaysSumToTheRoundedTotal() {
+        for (int cents = 1; cents < 5000; cents += 7) {
+            for (int installments : new int[]{6, 9, 12, 24}) {
+                BigDecimal total = BigDecimal.valueOf(100_000 + cents, 2);
+                List<ScheduledInstallment> schedule = scheduleEngine.schedule(total, new BigDecimal("0.2"), installments, LocalDate.of(2024, 1, 31));
+                assertEquals(total, schedule.stream().map(ScheduledInstallment::amount).reduce(BigDecimal.ZERO, BigDecimal::add));
+                assertTrue(schedule.get(installments - 1).amount().compareTo(schedule.get(0).amount()) >= 0);
+            }
+        }
+    }
+
+    @Test
+    void quote_shouldReuseTemplatesForTheSameTermRateAndMonth() {
+        LocalDate today = LocalDate.of(2024, 5, 10);
+        scheduleEngine.quote(BigDecimal.valueOf(1000), new BigDecimal("0.3"), 6, today);
+        scheduleEngine.quote(BigDecimal.valueOf(2500), new BigDecimal("0.30"), 6, today.plusDays(5));
+        scheduleEngine.quote(BigDecimal.valueOf(2500), new BigDecimal("0.3"), 9, today);
+
+        assertEquals(1, scheduleEngine.templateCache().hitCount());
+        assertEquals(2, scheduleEngine.templateCache().size());
+    }
+}